@@ -1,21 +1,16 @@
 package io.jenkins.plugins.clever;
 
-import com.sun.net.httpserver.HttpServer;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.model.Computer;
 import hudson.model.TaskListener;
 import hudson.remoting.Channel;
 import hudson.slaves.ComputerListener;
-import jenkins.security.MasterToSlaveCallable;
 
 import java.io.IOException;
-import java.io.Serializable;
-import java.net.InetSocketAddress;
 
 /**
- * As computer get connected, run a http server on node so clever cloud will detect a successful deployment
- * (as there's no other option (yet) to detect a successful deployment.
+ * As computer get connected, run a {@link HealthResponder} on node so clever cloud will detect a successful deployment.
  * 
  * @author <a href="mailto:nicolas.deloof@gmail.com">Nicolas De Loof</a>
  */
@@ -24,19 +19,24 @@ public class AgentListener extends ComputerListener {
 
     @Override
     public void preOnline(Computer c, Channel channel, FilePath root, TaskListener listener) throws IOException, InterruptedException {
-
-        channel.call(new Http8080Server());
+        if (!(c instanceof CleverComputer)) return;
+        HealthResponder.start(channel);
     }
 
-    private static final class Http8080Server extends MasterToSlaveCallable<Object, IOException> implements Serializable {
-
-        static final long serialVersionUID = 1L;
-
-        @Override
-        public Object call() throws IOException {
-            final HttpServer server = HttpServer.create(new InetSocketAddress("0.0.0.0", 8080), 1);
-            server.start();
-            return null;
+    @Override
+    public void onOnline(Computer c, TaskListener listener) throws IOException, InterruptedException {
+        if (!(c instanceof CleverComputer)) return;
+        final CleverAgent agent = ((CleverComputer) c).getNode();
+        if (agent == null) return;
+
+        // a reconnect (after a network glitch or a restart) doesn't tell anything about provisioning latency
+        if (AgentRegistry.get().setState(agent.getApplicationId(), AgentRegistry.State.ONLINE)) {
+            DemandForecast.get().provisioned(agent.getCloudName(), agent.getTemplate(), System.currentTimeMillis() - agent.getCreated());
+            ProvisioningMetrics.get().record(ProvisioningMetrics.CONNECT, agent.getTemplate(), agent.getZone(), agent.getCreated(), true);
+            ProvisioningTraces.get().record(agent.getNodeName(), ProvisioningTraces.Phase.CONNECTED);
         }
+        // Agent is connected, so we know deployment was successful even we didn't got notified yet
+        final DeploymentTracker tracker = DeploymentTracker.of(agent.getCloudName());
+        if (tracker != null) tracker.ready(agent.getApplicationId());
     }
 }
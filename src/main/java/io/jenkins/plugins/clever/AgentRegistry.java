@@ -0,0 +1,227 @@
+package io.jenkins.plugins.clever;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.slaves.Cloud;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+
+import javax.annotation.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Index of the Clever Cloud applications we run agents on, by application ID and node name, with the cloud and
+ * template they come from. Persisted as <code>clever-cloud-agents.xml</code> in <code>JENKINS_HOME</code>, so we
+ * still know about applications which have lost their node, for example while being terminated during a restart.
+ */
+@Extension
+public class AgentRegistry {
+
+    private static final Logger LOGGER = Logger.getLogger(AgentRegistry.class.getName());
+
+    /**
+     * Changes are written to disk asynchronously, at most once per this delay.
+     */
+    private static final long SAVE_DELAY = TimeUnit.SECONDS.toMillis(5);
+
+    public enum State {
+        /** Application created, agent not connected yet */
+        PROVISIONING,
+        /** Agent connected */
+        ONLINE,
+        /** Application is being deleted */
+        TERMINATING
+    }
+
+    public static final class Entry {
+        private final String applicationId;
+        private final String nodeName;
+        private final String cloud;
+        private final String template;
+        private final String organisationId;
+        private final String zone;
+        private final long created;
+        private volatile State state = State.PROVISIONING;
+
+        Entry(String applicationId, String nodeName, String cloud, String template, String organisationId, String zone, long created) {
+            this.applicationId = applicationId;
+            this.nodeName = nodeName;
+            this.cloud = cloud;
+            this.template = template;
+            this.organisationId = organisationId;
+            this.zone = zone;
+            this.created = created;
+        }
+
+        public String getApplicationId() {
+            return applicationId;
+        }
+
+        public String getNodeName() {
+            return nodeName;
+        }
+
+        public String getCloud() {
+            return cloud;
+        }
+
+        public String getTemplate() {
+            return template;
+        }
+
+        public String getOrganisationId() {
+            return organisationId;
+        }
+
+        public String getZone() {
+            return zone;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        public Date getCreatedDate() {
+            return new Date(created);
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * Node for this application is still registered in Jenkins.
+         */
+        public boolean isLive() {
+            return Jenkins.getInstance().getNode(nodeName) != null;
+        }
+    }
+
+    private final ConcurrentMap<String, Entry> byApplication = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Entry> byNode = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean saving = new AtomicBoolean();
+
+    public static AgentRegistry get() {
+        return ExtensionList.lookup(AgentRegistry.class).get(AgentRegistry.class);
+    }
+
+    /**
+     * Register a newly created application, before its node is.
+     */
+    void register(String applicationId, String nodeName, String cloud, String template, String organisationId, String zone) {
+        register(new Entry(applicationId, nodeName, cloud, template, organisationId, zone, System.currentTimeMillis()));
+    }
+
+    private void register(Entry e) {
+        byApplication.put(e.applicationId, e);
+        byNode.put(e.nodeName, e);
+        saveLater();
+    }
+
+    /**
+     * @return <code>false</code> if application is unknown or already was in this state
+     */
+    synchronized boolean setState(String applicationId, State state) {
+        final Entry e = byApplication.get(applicationId);
+        if (e == null || e.state == state) return false;
+        e.state = state;
+        saveLater();
+        return true;
+    }
+
+    /**
+     * Application has been deleted.
+     */
+    void unregister(String applicationId) {
+        final Entry e = byApplication.remove(applicationId);
+        if (e == null) return;
+        byNode.remove(e.nodeName, e);
+        saveLater();
+    }
+
+    @CheckForNull
+    public Entry get(String applicationId) {
+        return byApplication.get(applicationId);
+    }
+
+    @CheckForNull
+    public Entry forNode(String nodeName) {
+        return byNode.get(nodeName);
+    }
+
+    public Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(byApplication.values());
+    }
+
+    /**
+     * Applications for this cloud.
+     */
+    List<Entry> getEntries(String cloud) {
+        return byApplication.values().stream()
+                .filter(e -> e.cloud.equals(cloud))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Lookup a {@link CleverCloud} by name. Clouds get replaced on reconfiguration, so this is not cached.
+     */
+    @CheckForNull
+    CleverCloud getCloud(String name) {
+        final Cloud c = Jenkins.getInstance().getCloud(name);
+        return c instanceof CleverCloud ? (CleverCloud) c : null;
+    }
+
+    private XmlFile getConfigFile() {
+        return new XmlFile(Jenkins.XSTREAM2, new File(Jenkins.getInstance().getRootDir(), "clever-cloud-agents.xml"));
+    }
+
+    private void saveLater() {
+        if (!saving.compareAndSet(false, true)) return;
+        Timer.get().schedule(() -> {
+            saving.set(false);
+            try {
+                save();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to save Clever Cloud agents registry", e);
+            }
+        }, SAVE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /* package */ synchronized void save() throws IOException {
+        getConfigFile().write(new ArrayList<>(byApplication.values()));
+    }
+
+    @SuppressWarnings("unchecked")
+    /* package */ synchronized void load() throws IOException {
+        final XmlFile file = getConfigFile();
+        if (file.exists()) {
+            for (Entry e : (List<Entry>) file.read()) {
+                byApplication.put(e.applicationId, e);
+                byNode.put(e.nodeName, e);
+            }
+        }
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void init() throws IOException {
+        get().load();
+    }
+}
@@ -1,26 +1,64 @@
 package io.jenkins.plugins.clever;
 
 import hudson.Extension;
+import hudson.Util;
 import hudson.model.AbstractDescribableImpl;
 import hudson.model.Descriptor;
 import hudson.model.Label;
+import hudson.model.labels.LabelAtom;
+import hudson.slaves.RetentionStrategy;
+import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
+import io.jenkins.plugins.clever.api.Zone;
+import jenkins.model.Jenkins;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.RelativePath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * @author <a href="mailto:nicolas.deloof@gmail.com">Nicolas De Loof</a>
  */
 public class AgentTemplate extends AbstractDescribableImpl<AgentTemplate> {
 
+    private static final List<String> DEFAULT_ZONES = Collections.singletonList("par");
+
     private final String displayName;
 
     private final String label;
 
     private String scaler;
 
+    private String minScaler;
+
+    private String maxScaler;
+
     private String dockerImage;
 
+    private String zones;
+
+    private int minIdle;
+
+    private int maxInstances;
+
+    private boolean reusable;
+
+    private int maxBuilds;
+
+    private int idleMinutes;
+
+    private boolean cleanWorkspace;
+
+    private List<CacheVolume> caches;
+
+    private transient volatile Set<LabelAtom> labelAtoms;
+
     @DataBoundConstructor
     public AgentTemplate(String displayName, String label) {
         this.displayName = displayName;
@@ -45,6 +83,37 @@ public class AgentTemplate extends AbstractDescribableImpl<AgentTemplate> {
         this.scaler = scaler;
     }
 
+    /**
+     * Smallest flavor {@link FlavorAdvisor} can select for a job, defaults to {@link #getScaler()}.
+     */
+    public String getMinScaler() {
+        return minScaler != null ? minScaler : getScaler();
+    }
+
+    @DataBoundSetter
+    public void setMinScaler(String minScaler) {
+        this.minScaler = Util.fixEmpty(minScaler);
+    }
+
+    /**
+     * Largest flavor {@link FlavorAdvisor} can select for a job, defaults to {@link #getScaler()}.
+     */
+    public String getMaxScaler() {
+        return maxScaler != null ? maxScaler : getScaler();
+    }
+
+    @DataBoundSetter
+    public void setMaxScaler(String maxScaler) {
+        this.maxScaler = Util.fixEmpty(maxScaler);
+    }
+
+    /**
+     * Agent flavor is selected per job from history, rather than always using {@link #getScaler()}.
+     */
+    /* package */ boolean isRightSized() {
+        return !getMinScaler().equals(getMaxScaler());
+    }
+
     public String getDockerImage() {
         return dockerImage != null ? dockerImage : "jenkins/jnlp-slave";
     }
@@ -54,8 +123,129 @@ public class AgentTemplate extends AbstractDescribableImpl<AgentTemplate> {
         this.dockerImage = dockerImage;
     }
 
+    /**
+     * Candidate Clever Cloud zones for agents, separated by spaces or commas.
+     */
+    public String getZones() {
+        return zones;
+    }
+
+    @DataBoundSetter
+    public void setZones(String zones) {
+        this.zones = Util.fixEmptyAndTrim(zones);
+    }
+
+    /**
+     * Candidate zones, in configuration order. See {@link ZoneSelector}.
+     */
+    /* package */ List<String> getZoneList() {
+        if (zones == null) return DEFAULT_ZONES;
+        final List<String> l = new ArrayList<>();
+        for (String zone : zones.split("[\\s,]+")) {
+            if (!zone.isEmpty() && !l.contains(zone)) l.add(zone);
+        }
+        return l.isEmpty() ? DEFAULT_ZONES : l;
+    }
+
+    /**
+     * Number of idle agents to keep connected ahead of demand, see {@link StandbyPool}.
+     */
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    @DataBoundSetter
+    public void setMinIdle(int minIdle) {
+        this.minIdle = Math.max(0, minIdle);
+    }
+
+    /**
+     * Max number of agents for this template, <code>0</code> for unlimited.
+     */
+    public int getMaxInstances() {
+        return maxInstances;
+    }
+
+    @DataBoundSetter
+    public void setMaxInstances(int maxInstances) {
+        this.maxInstances = Math.max(0, maxInstances);
+    }
+
+    /**
+     * Agents are kept for subsequent builds rather than terminated after their first build.
+     */
+    public boolean isReusable() {
+        return reusable;
+    }
+
+    @DataBoundSetter
+    public void setReusable(boolean reusable) {
+        this.reusable = reusable;
+    }
+
+    /**
+     * Max number of builds a reusable agent will run before being terminated, <code>0</code> for unlimited.
+     */
+    public int getMaxBuilds() {
+        return maxBuilds;
+    }
+
+    @DataBoundSetter
+    public void setMaxBuilds(int maxBuilds) {
+        this.maxBuilds = Math.max(0, maxBuilds);
+    }
+
+    /**
+     * Delay after which an idle reusable agent is terminated.
+     */
+    public int getIdleMinutes() {
+        return idleMinutes > 0 ? idleMinutes : 10;
+    }
+
+    @DataBoundSetter
+    public void setIdleMinutes(int idleMinutes) {
+        this.idleMinutes = Math.max(0, idleMinutes);
+    }
+
+    public boolean isCleanWorkspace() {
+        return cleanWorkspace;
+    }
+
+    @DataBoundSetter
+    public void setCleanWorkspace(boolean cleanWorkspace) {
+        this.cleanWorkspace = cleanWorkspace;
+    }
+
+    /**
+     * Build caches shared by agents, see {@link CacheVolumes}.
+     */
+    public List<CacheVolume> getCaches() {
+        return caches != null ? caches : Collections.emptyList();
+    }
+
+    @DataBoundSetter
+    public void setCaches(List<CacheVolume> caches) {
+        this.caches = caches;
+    }
+
+    /* package */ RetentionStrategy<?> createRetentionStrategy() {
+        if (!reusable) return CleverAgent.ONE_SHOT;
+        return new ReusableRetentionStrategy(getMaxBuilds(), getIdleMinutes(), cleanWorkspace);
+    }
+
     public boolean matches(Label l) {
-        return l.matches(Label.get(label).listAtoms());
+        return l.matches(getLabelAtoms());
+    }
+
+    /**
+     * Parse label once, as template is immutable once configured.
+     */
+    private Set<LabelAtom> getLabelAtoms() {
+        Set<LabelAtom> atoms = labelAtoms;
+        if (atoms == null) {
+            labelAtoms = atoms = Label.get(label).listAtoms();
+        }
+        return atoms;
     }
 
     @Extension
@@ -63,6 +253,22 @@ public class AgentTemplate extends AbstractDescribableImpl<AgentTemplate> {
 
         public ListBoxModel doFillScalerItems() {
             final ListBoxModel options = new ListBoxModel();
+            addScalers(options);
+            return options;
+        }
+
+        public ListBoxModel doFillMinScalerItems() {
+            final ListBoxModel options = new ListBoxModel();
+            options.add("Same as virtual machine size", "");
+            addScalers(options);
+            return options;
+        }
+
+        public ListBoxModel doFillMaxScalerItems() {
+            return doFillMinScalerItems();
+        }
+
+        private static void addScalers(ListBoxModel options) {
             options.add("pico");
             options.add("nano");
             options.add("XS");
@@ -70,7 +276,25 @@ public class AgentTemplate extends AbstractDescribableImpl<AgentTemplate> {
             options.add("M");
             options.add("L");
             options.add("XL");
-            return options;
+        }
+
+        public FormValidation doCheckZones(@QueryParameter String value, @RelativePath("..") @QueryParameter String credentialsId) {
+            if (Util.fixEmptyAndTrim(value) == null || Util.fixEmpty(credentialsId) == null) return FormValidation.ok();
+            if (!Jenkins.getInstance().hasPermission(Jenkins.ADMINISTER)) return FormValidation.ok();
+            final Set<String> known = new HashSet<>();
+            try {
+                for (Zone zone : Catalog.of(credentialsId).getZones()) {
+                    known.add(zone.getName());
+                }
+            } catch (ApiException e) {
+                return FormValidation.warning("Failed to retrieve Clever Cloud zones: " + e.getMessage());
+            }
+            for (String zone : value.split("[\\s,]+")) {
+                if (!zone.isEmpty() && !known.contains(zone)) {
+                    return FormValidation.error("Unknown zone " + zone + ", available zones are " + known);
+                }
+            }
+            return FormValidation.ok();
         }
     }
 }
@@ -0,0 +1,187 @@
+package io.jenkins.plugins.clever;
+
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.Dispatcher;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.logging.HttpLoggingInterceptor;
+import hudson.Extension;
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import oauth.signpost.exception.OAuthException;
+import se.akerfeldt.okhttp.signpost.OkHttpOAuthConsumer;
+import se.akerfeldt.okhttp.signpost.SigningInterceptor;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry for Clever Cloud {@link ApiClient}s, so we don't create a new HTTP client (and pay for new TLS
+ * handshakes) on every API call.
+ * <p>
+ * One client is cached per credentials ID, and rebuilt if the credentials have been updated since. Cache is also
+ * flushed when the system credentials store is saved, so removed credentials don't linger. All clients
+ * share the same keep-alive connection pool, a bounded number of concurrent requests and a rate limit against the API.
+ */
+final class ApiClients {
+
+    private static final int MAX_REQUESTS = Integer.getInteger(ApiClients.class.getName() + ".maxRequests", 16);
+
+    private static final long KEEP_ALIVE = TimeUnit.MINUTES.toMillis(5);
+
+    private static final ConnectionPool CONNECTION_POOL = new ConnectionPool(MAX_REQUESTS, KEEP_ALIVE);
+
+    private static final Dispatcher DISPATCHER = new Dispatcher();
+
+    /**
+     * {@link Dispatcher} only applies to asynchronous calls, while generated API do use synchronous ones.
+     */
+    private static final Semaphore PERMITS = new Semaphore(MAX_REQUESTS, true);
+
+    /**
+     * Rate limit for requests sent to Clever Cloud API, with some room for bursts.
+     */
+    private static final TokenBucket RATE_LIMIT = new TokenBucket(
+            Integer.getInteger(ApiClients.class.getName() + ".requestsPerSecond", 10),
+            Integer.getInteger(ApiClients.class.getName() + ".burst", 20));
+
+    static {
+        DISPATCHER.setMaxRequests(MAX_REQUESTS);
+        DISPATCHER.setMaxRequestsPerHost(MAX_REQUESTS);
+    }
+
+    private static final ConcurrentMap<String, Entry> CLIENTS = new ConcurrentHashMap<>();
+
+    private static boolean debug = Boolean.getBoolean(CleverCloud.class.getName() + ".debug");
+
+    /**
+     * Alternate Clever Cloud API endpoint, i.e. <code>http://localhost:8000/v2</code>, typically for load testing.
+     */
+    /* package */ static String apiUrl = System.getProperty(ApiClients.class.getName() + ".apiUrl");
+
+    private ApiClients() {
+    }
+
+    /**
+     * Retrieve the {@link ApiClient} for those credentials. Missing credentials get a dedicated client which isn't
+     * cached.
+     */
+    static ApiClient get(@CheckForNull CleverAPICredentials credentials) {
+        if (credentials == null) {
+            return create(null);
+        }
+        final String fingerprint = fingerprint(credentials);
+        return CLIENTS.compute(credentials.getId(), (id, entry) ->
+                entry != null && entry.fingerprint.equals(fingerprint) ? entry : new Entry(fingerprint, create(credentials))
+        ).client;
+    }
+
+    /**
+     * Discard all cached clients.
+     */
+    static void invalidateAll() {
+        CLIENTS.clear();
+    }
+
+    /**
+     * Build a new client, bypassing cache.
+     */
+    /* package */ static ApiClient create(@CheckForNull CleverAPICredentials credentials) {
+        final ApiClient c = new ApiClient();
+        if (apiUrl != null) {
+            c.setBasePath(apiUrl);
+        }
+        final OkHttpClient http = c.getHttpClient();
+        http.setConnectionPool(CONNECTION_POOL);
+        http.setDispatcher(DISPATCHER);
+        http.setProtocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+
+        final List<Interceptor> interceptors = http.interceptors();
+        interceptors.add(chain -> {
+            try {
+                RATE_LIMIT.acquire();
+                PERMITS.acquire();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Interrupted waiting for a connection to Clever Cloud API");
+            }
+            try {
+                return chain.proceed(chain.request());
+            } finally {
+                PERMITS.release();
+            }
+        });
+
+        if (credentials != null) {
+            OkHttpOAuthConsumer consumer = new OkHttpOAuthConsumer(credentials.getConsumerKey().getPlainText(), credentials.getConsumerSecret().getPlainText());
+            consumer.setTokenWithSecret(credentials.getToken(), credentials.getSecret().getPlainText());
+            interceptors.add(new SigningInterceptor(consumer));
+        }
+
+        if (debug) {
+            final HttpLoggingInterceptor logging = new HttpLoggingInterceptor(new HttpLoggingInterceptor.Logger() {
+                @Override
+                public void log(String message) {
+                    System.out.println(message);
+                }
+            });
+            logging.setLevel(HttpLoggingInterceptor.Level.BODY);
+            interceptors.add(logging);
+        }
+        return c;
+    }
+
+    /**
+     * Compute the OAuth <code>Authorization</code> header for a request. Used to authenticate on API endpoints
+     * which don't rely on plain HTTP requests, like the events websocket.
+     */
+    static String authorization(CleverAPICredentials credentials, Request request) throws IOException {
+        OkHttpOAuthConsumer consumer = new OkHttpOAuthConsumer(credentials.getConsumerKey().getPlainText(), credentials.getConsumerSecret().getPlainText());
+        consumer.setTokenWithSecret(credentials.getToken(), credentials.getSecret().getPlainText());
+        try {
+            return consumer.sign(request).getHeader("Authorization");
+        } catch (OAuthException e) {
+            throw new IOException("Failed to sign request to " + request.urlString(), e);
+        }
+    }
+
+    private static String fingerprint(CleverAPICredentials credentials) {
+        return Util.getDigestOf(credentials.getToken()
+                + ':' + credentials.getSecret().getPlainText()
+                + ':' + credentials.getConsumerKey().getPlainText()
+                + ':' + credentials.getConsumerSecret().getPlainText());
+    }
+
+    @Extension
+    public static class CredentialsListener extends SaveableListener {
+
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof SystemCredentialsProvider) {
+                invalidateAll();
+                Catalog.invalidateAll();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final String fingerprint;
+        private final ApiClient client;
+
+        Entry(String fingerprint, ApiClient client) {
+            this.fingerprint = fingerprint;
+            this.client = client;
+        }
+    }
+}
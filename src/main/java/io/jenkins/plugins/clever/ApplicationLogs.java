@@ -0,0 +1,179 @@
+package io.jenkins.plugins.clever;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.squareup.okhttp.Call;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import hudson.model.Computer;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stream a Clever Cloud application logs (deployment and runtime) into its {@link CleverComputer} until agent is
+ * removed, so we can tell why an agent never connects, or why it got disconnected or killed by the platform, which
+ * remoting channel can't report.
+ * <p>
+ * Lines are read one at a time and appended to the computer's {@link LogBuffer}, so a chatty application is throttled
+ * by TCP flow control rather than buffered in memory. The number of applications we follow at once is bounded, as each
+ * stream holds a thread and a connection.
+ */
+final class ApplicationLogs {
+
+    private static final Logger LOGGER = Logger.getLogger(ApplicationLogs.class.getName());
+
+    private static final Semaphore STREAMS = new Semaphore(Integer.getInteger(ApplicationLogs.class.getName() + ".maxStreams", 32));
+
+    private static final long RECONNECT_DELAY = TimeUnit.SECONDS.toMillis(5);
+
+    private static final int MAX_RECONNECT = 10;
+
+    private final String credentialsId;
+
+    private final String applicationId;
+
+    private final CleverComputer computer;
+
+    private volatile boolean stopped;
+
+    private volatile Call call;
+
+    /**
+     * Timestamp of the last log event we got, so we can skip the ones replayed when we reconnect.
+     */
+    private String last;
+
+    /**
+     * Hashes of the events we got for {@link #last} timestamp. Events which share the boundary timestamp can't be
+     * ordered, so a replayed one is only told apart by its content.
+     */
+    private final Set<Integer> lastHashes = new HashSet<>();
+
+    /* package */ ApplicationLogs(String credentialsId, String applicationId, CleverComputer computer) {
+        this.credentialsId = credentialsId;
+        this.applicationId = applicationId;
+        this.computer = computer;
+    }
+
+    static ApplicationLogs follow(CleverCloud cloud, CleverComputer computer, String applicationId) {
+        final ApplicationLogs logs = new ApplicationLogs(cloud.getCredentialsId(), applicationId, computer);
+        if (!STREAMS.tryAcquire()) {
+            computer.applicationLog("Too many applications being followed, logs for " + applicationId + " are not available.");
+            return logs;
+        }
+        Computer.threadPoolForRemoting.submit(() -> {
+            try {
+                logs.run();
+            } finally {
+                STREAMS.release();
+            }
+        });
+        return logs;
+    }
+
+    void stop() {
+        stopped = true;
+        final Call c = call;
+        if (c != null) c.cancel();
+    }
+
+    private void run() {
+        int failures = 0;
+        while (!stopped && failures < MAX_RECONNECT) {
+            try {
+                // stream ends on read timeout for a quiet application, which is fine
+                stream();
+                failures = 0;
+            } catch (IOException e) {
+                if (stopped) return;
+                failures++;
+                LOGGER.log(Level.FINE, "Logs stream for application " + applicationId + " failed", e);
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void stream() throws IOException {
+        final ApiClient c = CleverCloud.getApiClient(CleverCloud.getAPICredentials(credentialsId));
+        final OkHttpClient http = c.getHttpClient().clone();
+        http.setReadTimeout(5, TimeUnit.MINUTES);
+
+        final Request request = new Request.Builder()
+                .url(c.getBasePath() + "/logs/logs-chunked/" + applicationId)
+                .build();
+        final Call call = http.newCall(request);
+        this.call = call;
+        if (stopped) return;
+
+        final Response response = call.execute();
+        try {
+            if (!response.isSuccessful()) {
+                throw new IOException("Failed to get logs for " + applicationId + ": HTTP " + response.code());
+            }
+            final BufferedSource source = response.body().source();
+            String line;
+            while (!stopped && (line = source.readUtf8Line()) != null) {
+                line = format(line);
+                if (line != null) computer.applicationLog(line);
+            }
+        } finally {
+            response.body().close();
+        }
+    }
+
+    /**
+     * Log events are JSON documents, possibly sent as server-sent events.
+     * @return message to log, or <code>null</code> to skip this line.
+     */
+    /* package */ String format(String line) {
+        if (line.startsWith("data:")) line = line.substring(5).trim();
+        if (line.isEmpty() || line.startsWith(":") || line.startsWith("event:") || line.startsWith("id:")) return null;
+        try {
+            final JsonElement json = new JsonParser().parse(line);
+            if (!json.isJsonObject()) return line;
+            JsonObject event = json.getAsJsonObject();
+            if (event.has("_source")) event = event.getAsJsonObject("_source");
+
+            final String timestamp = event.has("@timestamp") ? event.get("@timestamp").getAsString() : null;
+            String message = line;
+            for (String field : new String[]{"@message", "message"}) {
+                if (event.has(field)) {
+                    message = event.get(field).getAsString();
+                    break;
+                }
+            }
+            if (timestamp == null) return message;
+            if (replayed(timestamp, line)) return null;
+            return timestamp + " " + message;
+        } catch (JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+            return line;
+        }
+    }
+
+    /**
+     * Events are replayed from some point in the past when we reconnect.
+     */
+    private boolean replayed(String timestamp, String event) {
+        final int c = last == null ? 1 : timestamp.compareTo(last);
+        if (c < 0) return true;
+        if (c > 0) {
+            last = timestamp;
+            lastHashes.clear();
+        }
+        return !lastHashes.add(event.hashCode());
+    }
+}
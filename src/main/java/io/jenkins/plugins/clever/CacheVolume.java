@@ -0,0 +1,88 @@
+package io.jenkins.plugins.clever;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+/**
+ * A build cache (Maven repository, Gradle or npm cache, ...) shared by all agents of an {@link AgentTemplate}, backed
+ * by a Clever Cloud FS bucket add-on. See {@link CacheVolumes}.
+ */
+public class CacheVolume extends AbstractDescribableImpl<CacheVolume> {
+
+    private final String name;
+
+    private final String mountPath;
+
+    private String envVar;
+
+    private int maxAgeDays;
+
+    @DataBoundConstructor
+    public CacheVolume(String name, String mountPath) {
+        this.name = name;
+        this.mountPath = mountPath;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Absolute path bucket is mounted on in agent container.
+     */
+    public String getMountPath() {
+        return mountPath;
+    }
+
+    /**
+     * Environment variable set to {@link #getMountPath()}, for tools to find their cache, e.g.
+     * <code>GRADLE_USER_HOME</code>. Optional.
+     */
+    public String getEnvVar() {
+        return envVar;
+    }
+
+    @DataBoundSetter
+    public void setEnvVar(String envVar) {
+        this.envVar = Util.fixEmptyAndTrim(envVar);
+    }
+
+    /**
+     * Cache is replaced by an empty one after this number of days, <code>0</code> to keep it forever.
+     */
+    public int getMaxAgeDays() {
+        return maxAgeDays;
+    }
+
+    @DataBoundSetter
+    public void setMaxAgeDays(int maxAgeDays) {
+        this.maxAgeDays = Math.max(0, maxAgeDays);
+    }
+
+    @Extension
+    public static class DescriptorImpl extends Descriptor<CacheVolume> {
+
+        @Override
+        public String getDisplayName() {
+            return "Cache volume";
+        }
+
+        public FormValidation doCheckName(@QueryParameter String value) {
+            if (!value.matches("[A-Za-z0-9_-]+")) {
+                return FormValidation.error("Only letters, digits, '-' and '_' are allowed");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckMountPath(@QueryParameter String value) {
+            if (!value.startsWith("/")) return FormValidation.error("Mount path must be absolute");
+            return FormValidation.ok();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package io.jenkins.plugins.clever;
+
+import hudson.model.TaskListener;
+import io.jenkins.plugins.clever.api.Addon;
+import io.jenkins.plugins.clever.api.AllApi;
+import io.jenkins.plugins.clever.api.Body;
+import io.jenkins.plugins.clever.api.ListEnv;
+import io.jenkins.plugins.clever.api.Provider;
+import io.jenkins.plugins.clever.api.WannabeAddon;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * FS bucket add-ons backing the {@link CacheVolume}s of a cloud's templates. A bucket is created once per cache and
+ * zone, on first agent which needs it, then linked to every new application and mounted with
+ * <code>CC_FS_BUCKET</code> environment variables.
+ * <p>
+ * Buckets are named after {@link CleverCloud#getApplicationTag()}, cache name, zone and creation timestamp, so we can
+ * find them back after a restart. Once a cache is older than its max age, next agent gets a new empty bucket and
+ * the old one is deleted by {@link #sweep(CleverCloud, TaskListener)} when no application uses it anymore.
+ */
+final class CacheVolumes {
+
+    private static final Logger LOGGER = Logger.getLogger(CacheVolumes.class.getName());
+
+    private static final ConcurrentMap<String, CacheVolumes> VOLUMES = new ConcurrentHashMap<>();
+
+    private static final String PROVIDER = "fs-bucket";
+
+    /**
+     * Current bucket for each cache, by cache name and zone.
+     */
+    private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<>();
+
+    static CacheVolumes of(CleverCloud cloud) {
+        return VOLUMES.computeIfAbsent(cloud.name, n -> new CacheVolumes());
+    }
+
+    /**
+     * Link cache buckets to a new application, and add variables to mount them to its environment.
+     */
+    void link(CleverCloud cloud, AllApi api, CircuitBreaker breaker, String applicationId, String zone,
+              List<CacheVolume> volumes, Map<String, String> env) throws Exception {
+        int i = 0;
+        for (CacheVolume volume : volumes) {
+            final Bucket bucket = bucket(cloud, api, breaker, volume, zone);
+            final Body body = new Body();
+            body.setBody(bucket.id);
+            Retry.call(breaker, false, () -> {
+                api.postOrganisationsIdApplicationsAppIdAddons(cloud.getOrganisationId(), applicationId, body);
+                return null;
+            });
+            env.put(i == 0 ? "CC_FS_BUCKET" : "CC_FS_BUCKET_" + i, volume.getMountPath() + ":" + bucket.host);
+            if (volume.getEnvVar() != null) env.put(volume.getEnvVar(), volume.getMountPath());
+            i++;
+        }
+    }
+
+    private Bucket bucket(CleverCloud cloud, AllApi api, CircuitBreaker breaker, CacheVolume volume, String zone) throws Exception {
+        final String key = volume.getName() + "@" + zone;
+        final Bucket current = buckets.get(key);
+        if (current != null && !current.isExpired(volume)) return current;
+
+        // only one agent creates the bucket, others wait for it
+        synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+            Bucket b = buckets.get(key);
+            if (b == null) b = find(cloud, api, breaker, volume.getName(), zone);
+            if (b == null || b.isExpired(volume)) b = create(cloud, api, breaker, volume.getName(), zone);
+            buckets.put(key, b);
+            return b;
+        }
+    }
+
+    /**
+     * Most recent bucket for this cache and zone, if any.
+     */
+    private Bucket find(CleverCloud cloud, AllApi api, CircuitBreaker breaker, String name, String zone) throws Exception {
+        final String prefix = prefix(cloud) + name + ":" + zone + ":";
+        Addon newest = null;
+        for (Addon addon : Retry.call(breaker, true, () -> api.getOrganisationsIdAddons(cloud.getOrganisationId()))) {
+            if (!addon.getName().startsWith(prefix)) continue;
+            if (newest == null || created(addon.getName()) > created(newest.getName())) newest = addon;
+        }
+        if (newest == null) return null;
+        return new Bucket(newest.getId(), host(cloud, api, breaker, newest.getId()), created(newest.getName()));
+    }
+
+    private Bucket create(CleverCloud cloud, AllApi api, CircuitBreaker breaker, String name, String zone) throws Exception {
+        final Provider provider = Catalog.of(cloud.getCredentialsId()).getAddonProvider(PROVIDER);
+        if (provider == null || provider.getPlans() == null || provider.getPlans().isEmpty()) {
+            throw new IOException("No '" + PROVIDER + "' add-on available");
+        }
+        final long created = System.currentTimeMillis();
+        final WannabeAddon addon = new WannabeAddon();
+        addon.setName(prefix(cloud) + name + ":" + zone + ":" + created);
+        addon.setProviderId(PROVIDER);
+        addon.setPlan(provider.getPlans().get(0).getId());
+        addon.setRegion(zone);
+
+        final Addon a = Retry.call(breaker, false, () -> api.postOrganisationsIdAddons(cloud.getOrganisationId(), addon));
+        LOGGER.log(Level.INFO, "Created FS bucket {0} for cache {1} in zone {2}", new Object[]{a.getId(), name, zone});
+        return new Bucket(a.getId(), host(cloud, api, breaker, a.getId()), created);
+    }
+
+    private static String host(CleverCloud cloud, AllApi api, CircuitBreaker breaker, String addonId) throws Exception {
+        for (ListEnv e : Retry.call(breaker, true, () -> api.getOrganisationsIdAddonsAddonIdEnv(cloud.getOrganisationId(), addonId))) {
+            if ("BUCKET_HOST".equals(e.getName())) return e.getValue();
+        }
+        throw new IOException("FS bucket " + addonId + " has no BUCKET_HOST");
+    }
+
+    /**
+     * Delete buckets which have been replaced by a newer one, or whose cache isn't configured anymore, once no
+     * application uses them.
+     */
+    void sweep(CleverCloud cloud, TaskListener listener) throws Exception {
+        final AllApi api = new AllApi(CleverCloud.getApiClient(CleverCloud.getAPICredentials(cloud.getCredentialsId())));
+        final CircuitBreaker breaker = CircuitBreaker.of(cloud.name);
+        final String prefix = prefix(cloud);
+
+        final Set<String> configured = new HashSet<>();
+        for (AgentTemplate template : cloud.getTemplates()) {
+            for (CacheVolume volume : template.getCaches()) configured.add(volume.getName());
+        }
+
+        // newest bucket for each cache and zone is still in use
+        final Map<String, Addon> newest = new HashMap<>();
+        final List<Addon> all = new ArrayList<>();
+        for (Addon addon : Retry.call(breaker, true, () -> api.getOrganisationsIdAddons(cloud.getOrganisationId()))) {
+            if (!addon.getName().startsWith(prefix)) continue;
+            all.add(addon);
+            newest.merge(cache(addon.getName()), addon, (a, b) -> created(a.getName()) >= created(b.getName()) ? a : b);
+        }
+
+        for (Addon addon : all) {
+            final String cache = cache(addon.getName());
+            final boolean replaced = newest.get(cache) != addon;
+            final boolean unconfigured = !configured.contains(cache.substring(0, cache.lastIndexOf(':')));
+            if (!replaced && !unconfigured) continue;
+            if (!Retry.call(breaker, true, () -> api.getOrganisationsIdAddonsAddonIdApplications(cloud.getOrganisationId(), addon.getId())).isEmpty()) continue;
+
+            Retry.call(breaker, true, () -> {
+                api.deleteOrganisationsIdAddonsAddonId(cloud.getOrganisationId(), addon.getId());
+                return null;
+            });
+            buckets.values().removeIf(b -> b.id.equals(addon.getId()));
+            listener.getLogger().println("Deleted FS bucket " + addon.getName());
+            LOGGER.log(Level.INFO, "Deleted FS bucket {0}", addon.getName());
+        }
+    }
+
+    private static String prefix(CleverCloud cloud) {
+        return cloud.getApplicationTag() + ":cache:";
+    }
+
+    /**
+     * <code>name:zone</code> for a bucket named <code>prefix name:zone:created</code>.
+     */
+    /* package */ static String cache(String name) {
+        final int end = name.lastIndexOf(':');
+        final int start = name.lastIndexOf(':', name.lastIndexOf(':', end - 1) - 1);
+        return name.substring(start + 1, end);
+    }
+
+    /**
+     * Creation timestamp of a bucket, <code>0</code> if name doesn't have one.
+     */
+    /* package */ static long created(String name) {
+        try {
+            return Long.parseLong(name.substring(name.lastIndexOf(':') + 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static final class Bucket {
+        final String id;
+        final String host;
+        final long created;
+
+        Bucket(String id, String host, long created) {
+            this.id = id;
+            this.host = host;
+            this.created = created;
+        }
+
+        boolean isExpired(CacheVolume volume) {
+            return volume.getMaxAgeDays() > 0
+                    && System.currentTimeMillis() - created > TimeUnit.DAYS.toMillis(volume.getMaxAgeDays());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package io.jenkins.plugins.clever;
+
+import hudson.model.Computer;
+
+import javax.annotation.CheckForNull;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A value loaded from Clever Cloud API which is cached for some time.
+ * <p>
+ * Once expired, cached value is still returned while a refresh runs in background (stale-while-revalidate), until
+ * it gets too old to be trusted. Concurrent loads are coalesced into a single API request.
+ */
+final class CachedValue<T> {
+
+    interface Loader<T> {
+        T load() throws Exception;
+    }
+
+    private final Loader<T> loader;
+
+    private final long ttl;
+
+    private final long maxStale;
+
+    private volatile T value;
+
+    private volatile long loadedAt;
+
+    /** guarded by this */
+    private CompletableFuture<T> inFlight;
+
+    CachedValue(Loader<T> loader, long ttl, long maxStale) {
+        this.loader = loader;
+        this.ttl = ttl;
+        this.maxStale = maxStale;
+    }
+
+    T get() throws ApiException {
+        final T v = value;
+        final long age = System.currentTimeMillis() - loadedAt;
+        if (v != null && age <= maxStale) {
+            if (age > ttl) refresh();
+            return v;
+        }
+
+        try {
+            return refresh().get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof ApiException) throw (ApiException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new ApiException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(e);
+        }
+    }
+
+    /**
+     * Cached value if we have one, without waiting for API. A (re)load is started in background if needed.
+     */
+    @CheckForNull
+    T getIfPresent() {
+        final T v = value;
+        final long age = System.currentTimeMillis() - loadedAt;
+        if (v == null || age > ttl) refresh();
+        return v != null && age <= maxStale ? v : null;
+    }
+
+    void invalidate() {
+        value = null;
+    }
+
+    private synchronized CompletableFuture<T> refresh() {
+        if (inFlight != null) return inFlight;
+
+        final CompletableFuture<T> f = new CompletableFuture<>();
+        inFlight = f;
+        Computer.threadPoolForRemoting.submit(() -> {
+            try {
+                final T v = loader.load();
+                loadedAt = System.currentTimeMillis();
+                value = v;
+                f.complete(v);
+            } catch (Throwable t) {
+                f.completeExceptionally(t);
+            } finally {
+                synchronized (this) {
+                    inFlight = null;
+                }
+            }
+        });
+        return f;
+    }
+}
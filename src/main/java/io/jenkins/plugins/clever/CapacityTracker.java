@@ -0,0 +1,160 @@
+package io.jenkins.plugins.clever;
+
+import hudson.model.Node;
+import jenkins.model.Jenkins;
+
+import javax.annotation.CheckForNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Count Clever Cloud applications per cloud and template, so we can enforce max instances caps without scanning
+ * Jenkins nodes on every {@link CleverCloud#provision(hudson.model.Label, int)} call.
+ * <p>
+ * A slot is {@link Reservation reserved} before we plan a new agent, then bound to the application once created, and
+ * released when application is deleted. Counters are only updated with atomic operations, and initialized from registered agents
+ * the first time a cloud is used after a restart.
+ */
+final class CapacityTracker {
+
+    private static final ConcurrentMap<String, CapacityTracker> TRACKERS = new ConcurrentHashMap<>();
+
+    private final AtomicInteger total = new AtomicInteger();
+
+    private final ConcurrentMap<String, Counters> templates = new ConcurrentHashMap<>();
+
+    /**
+     * Template for all applications we have been bound to.
+     */
+    private final ConcurrentMap<String, String> applications = new ConcurrentHashMap<>();
+
+    private CapacityTracker(String cloud) {
+        for (Node node : Jenkins.getInstance().getNodes()) {
+            if (node instanceof CleverAgent && cloud.equals(((CleverAgent) node).getCloudName())) {
+                final CleverAgent agent = (CleverAgent) node;
+                total.incrementAndGet();
+                of(agent.getTemplate()).instances.incrementAndGet();
+                applications.put(agent.getApplicationId(), agent.getTemplate());
+            }
+        }
+    }
+
+    static CapacityTracker of(CleverCloud cloud) {
+        return TRACKERS.computeIfAbsent(cloud.name, CapacityTracker::new);
+    }
+
+    private Counters of(String template) {
+        return templates.computeIfAbsent(template, t -> new Counters());
+    }
+
+    /**
+     * Reserve a slot for a new agent, unless this would exceed cloud or template max instances.
+     * @return <code>null</code> if a max instances cap has been reached
+     */
+    @CheckForNull
+    Reservation reserve(CleverCloud cloud, AgentTemplate template) {
+        final Counters c = of(template.getDisplayName());
+        if (!increment(total, cloud.getMaxInstances())) return null;
+        if (!increment(c.instances, template.getMaxInstances())) {
+            total.decrementAndGet();
+            return null;
+        }
+        c.provisioning.incrementAndGet();
+        return new Reservation(template.getDisplayName());
+    }
+
+    private static boolean increment(AtomicInteger counter, int max) {
+        while (true) {
+            final int n = counter.get();
+            if (max > 0 && n >= max) return false;
+            if (counter.compareAndSet(n, n + 1)) return true;
+        }
+    }
+
+    /**
+     * Agent provisioning is over, successfully or not.
+     */
+    void provisioned(String template) {
+        of(template).provisioning.decrementAndGet();
+    }
+
+    /**
+     * Application has been deleted. Safe to call multiple times for the same application.
+     */
+    void release(String applicationId) {
+        final String template = applications.remove(applicationId);
+        if (template == null) return;
+        of(template).instances.decrementAndGet();
+        total.decrementAndGet();
+    }
+
+    /**
+     * Number of agents for this template being provisioned.
+     */
+    int getProvisioning(String template) {
+        final Counters c = templates.get(template);
+        return c != null ? Math.max(0, c.provisioning.get()) : 0;
+    }
+
+    int getInstances(String template) {
+        final Counters c = templates.get(template);
+        return c != null ? c.instances.get() : 0;
+    }
+
+    /**
+     * Number of agents we can still provision for this template before reaching a cap, {@link Integer#MAX_VALUE} if
+     * unlimited.
+     */
+    int getRemaining(CleverCloud cloud, AgentTemplate template) {
+        int remaining = Integer.MAX_VALUE;
+        if (cloud.getMaxInstances() > 0) remaining = cloud.getMaxInstances() - total.get();
+        if (template.getMaxInstances() > 0) {
+            remaining = Math.min(remaining, template.getMaxInstances() - getInstances(template.getDisplayName()));
+        }
+        return Math.max(0, remaining);
+    }
+
+    int getTotal() {
+        return total.get();
+    }
+
+    /**
+     * A slot reserved for a new agent. Has to be either bound to an application or cancelled. Cancelling a
+     * reservation which has already been bound or cancelled does nothing, so it can safely be done in a
+     * <code>finally</code> block covering all the provisioning steps which may fail.
+     */
+    final class Reservation {
+        private final String template;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Reservation(String template) {
+            this.template = template;
+        }
+
+        /**
+         * Reserved slot is now used by an application.
+         */
+        void bind(String applicationId) {
+            if (done.compareAndSet(false, true)) applications.put(applicationId, template);
+        }
+
+        /**
+         * Reservation wasn't used, as we failed to create application.
+         */
+        void cancel() {
+            if (!done.compareAndSet(false, true)) return;
+            final Counters c = of(template);
+            c.provisioning.decrementAndGet();
+            c.instances.decrementAndGet();
+            total.decrementAndGet();
+        }
+    }
+
+    private static final class Counters {
+        private final AtomicInteger instances = new AtomicInteger();
+        private final AtomicInteger provisioning = new AtomicInteger();
+    }
+}
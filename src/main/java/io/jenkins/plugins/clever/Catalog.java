@@ -0,0 +1,127 @@
+package io.jenkins.plugins.clever;
+
+import hudson.Util;
+import io.jenkins.plugins.clever.api.AllApi;
+import io.jenkins.plugins.clever.api.Flavor;
+import io.jenkins.plugins.clever.api.Instance;
+import io.jenkins.plugins.clever.api.Organisation;
+import io.jenkins.plugins.clever.api.Provider;
+import io.jenkins.plugins.clever.api.User;
+import io.jenkins.plugins.clever.api.Zone;
+
+import javax.annotation.CheckForNull;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clever Cloud catalog (instance types, flavors, zones, add-on providers) and organisations available to some credentials.
+ * Those hardly ever change, so we cache them rather than querying API for every provisioned agent or page render.
+ */
+final class Catalog {
+
+    private static final long TTL = TimeUnit.MINUTES.toMillis(Integer.getInteger(Catalog.class.getName() + ".ttlMinutes", 5));
+
+    private static final long MAX_STALE = TimeUnit.HOURS.toMillis(1);
+
+    private static final ConcurrentMap<String, Catalog> CATALOGS = new ConcurrentHashMap<>();
+
+    private final String credentialsId;
+
+    /**
+     * Enabled instances indexed by type.
+     */
+    private final CachedValue<Map<String, Instance>> instances = new CachedValue<>(() -> {
+        final Map<String, Instance> m = new LinkedHashMap<>();
+        for (Instance instance : Retry.call(null, true, () -> api().getProductsInstances(""))) {
+            if (instance.isEnabled()) m.putIfAbsent(instance.getType(), instance);
+        }
+        return Collections.unmodifiableMap(m);
+    }, TTL, MAX_STALE);
+
+    private final CachedValue<List<Zone>> zones = new CachedValue<>(
+            () -> Collections.unmodifiableList(Retry.call(null, true, () -> api().getProductsZones())), TTL, MAX_STALE);
+
+    /**
+     * Add-on providers indexed by ID.
+     */
+    private final CachedValue<Map<String, Provider>> addonProviders = new CachedValue<>(() -> {
+        final Map<String, Provider> m = new LinkedHashMap<>();
+        for (Provider provider : Retry.call(null, true, () -> api().getProductsAddonProviders())) {
+            m.put(provider.getId(), provider);
+        }
+        return Collections.unmodifiableMap(m);
+    }, TTL, MAX_STALE);
+
+    private final CachedValue<List<Organisation>> organisations = new CachedValue<>(() -> {
+        final AllApi api = api();
+        final User self = Retry.call(null, true, api::getSelf);
+        return Collections.unmodifiableList(Retry.call(null, true, () -> api.getOrganisations(self.getId()))); // can't set null ?
+    }, TTL, MAX_STALE);
+
+    private Catalog(String credentialsId) {
+        this.credentialsId = credentialsId;
+    }
+
+    /**
+     * @throws ApiException if there are no such credentials, so arbitrary IDs sent by form validation don't get a
+     * catalog cached forever.
+     */
+    static Catalog of(String credentialsId) throws ApiException {
+        final String id = Util.fixNull(credentialsId);
+        final Catalog catalog = CATALOGS.get(id);
+        if (catalog != null) return catalog;
+        if (CleverCloud.getAPICredentials(id) == null) throw new ApiException("No Clever Cloud credentials " + id);
+        return CATALOGS.computeIfAbsent(id, Catalog::new);
+    }
+
+    /**
+     * Discard all cached data, typically as credentials have been updated or removed.
+     */
+    static void invalidateAll() {
+        CATALOGS.clear();
+    }
+
+    private AllApi api() {
+        return new AllApi(CleverCloud.getApiClient(CleverCloud.getAPICredentials(credentialsId)));
+    }
+
+    /**
+     * Enabled instance for this type, typically <code>docker</code>.
+     */
+    @CheckForNull
+    Instance getInstance(String type) throws ApiException {
+        return instances.get().get(type);
+    }
+
+    List<Flavor> getFlavors(String type) throws ApiException {
+        final Instance instance = getInstance(type);
+        return instance != null && instance.getFlavors() != null ? instance.getFlavors() : Collections.emptyList();
+    }
+
+    /**
+     * Same as {@link #getFlavors(String)}, but only from cache, so it never waits for API. Empty if not loaded yet.
+     */
+    List<Flavor> getCachedFlavors(String type) {
+        final Map<String, Instance> m = instances.getIfPresent();
+        final Instance instance = m != null ? m.get(type) : null;
+        return instance != null && instance.getFlavors() != null ? instance.getFlavors() : Collections.emptyList();
+    }
+
+    List<Zone> getZones() throws ApiException {
+        return zones.get();
+    }
+
+    @CheckForNull
+    Provider getAddonProvider(String id) throws ApiException {
+        return addonProviders.get().get(id);
+    }
+
+    List<Organisation> getOrganisations() throws ApiException {
+        return organisations.get();
+    }
+}
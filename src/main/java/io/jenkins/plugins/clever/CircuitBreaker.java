@@ -0,0 +1,117 @@
+package io.jenkins.plugins.clever;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Track Clever Cloud API health for a cloud. After too many consecutive failures, circuit opens so we stop
+ * provisioning agents which are doomed to fail. After some cooldown delay we let a single trial request go through,
+ * which closes the circuit on success or re-opens it on failure.
+ */
+final class CircuitBreaker {
+
+    private static final Logger LOGGER = Logger.getLogger(CircuitBreaker.class.getName());
+
+    private static final int THRESHOLD = Integer.getInteger(CircuitBreaker.class.getName() + ".threshold", 5);
+
+    private static final long COOLDOWN = TimeUnit.SECONDS.toMillis(Integer.getInteger(CircuitBreaker.class.getName() + ".cooldownSeconds", 30));
+
+    private static final ConcurrentMap<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String cloud;
+
+    private final int threshold;
+
+    private final long cooldown;
+
+    /** guarded by this */
+    private State state = State.CLOSED;
+
+    /** guarded by this */
+    private int failures;
+
+    /** guarded by this */
+    private long openedAt;
+
+    /** guarded by this, trial request is in flight while half-open */
+    private boolean probing;
+
+    /* package */ CircuitBreaker(String cloud, int threshold, long cooldown) {
+        this.cloud = cloud;
+        this.threshold = threshold;
+        this.cooldown = cooldown;
+    }
+
+    static CircuitBreaker of(String cloud) {
+        return BREAKERS.computeIfAbsent(cloud, c -> new CircuitBreaker(c, THRESHOLD, COOLDOWN));
+    }
+
+    /**
+     * @return <code>false</code> while Clever Cloud API is considered unavailable, or a trial request is in flight
+     */
+    synchronized boolean allowsRequests() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                return System.currentTimeMillis() - openedAt >= cooldown;
+            default:
+                return !probing;
+        }
+    }
+
+    /**
+     * Ask for permission to send a request. Once cooldown is over, only the first caller is allowed, until it reports
+     * {@link #success()}, {@link #failure()} or {@link #release()}.
+     */
+    synchronized boolean acquire() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= cooldown) {
+            state = State.HALF_OPEN;
+            probing = false;
+        }
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                return false;
+            default:
+                if (probing) return false;
+                probing = true;
+                return true;
+        }
+    }
+
+    /**
+     * Request failed for a reason which tells nothing about API health.
+     */
+    synchronized void release() {
+        probing = false;
+    }
+
+    synchronized void success() {
+        if (state != State.CLOSED) {
+            LOGGER.log(Level.INFO, "Clever Cloud API is back for cloud {0}", cloud);
+        }
+        state = State.CLOSED;
+        failures = 0;
+        probing = false;
+    }
+
+    synchronized void failure() {
+        failures++;
+        probing = false;
+        if (state == State.HALF_OPEN || failures >= threshold) {
+            if (state != State.OPEN) {
+                LOGGER.log(Level.WARNING, "Clever Cloud API unavailable for cloud {0} after {1} failures, suspending provisioning",
+                        new Object[]{cloud, failures});
+            }
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+}
@@ -29,12 +29,10 @@ import hudson.model.Node;
 import hudson.model.TaskListener;
 import hudson.slaves.AbstractCloudComputer;
 import hudson.slaves.AbstractCloudSlave;
-import hudson.slaves.Cloud;
 import hudson.slaves.EphemeralNode;
 import hudson.slaves.JNLPLauncher;
 import hudson.slaves.RetentionStrategy;
 import io.jenkins.plugins.clever.api.ApplicationsApi;
-import jenkins.model.Jenkins;
 
 import java.io.IOException;
 import java.util.Collections;
@@ -44,26 +42,112 @@ import java.util.Collections;
  */
 public class CleverAgent extends AbstractCloudSlave implements EphemeralNode {
 
-    private final static RetentionStrategy STRATEGY = new OneShotRetentionStrategy();
+    /* package */ final static RetentionStrategy ONE_SHOT = new OneShotRetentionStrategy();
 
     private final String cloud;
+    private final String template;
     private final String applicationId;
     private final String organisationId;
+    private final long created = System.currentTimeMillis();
 
-    public CleverAgent(String cloud, String name, String organisationId, String applicationId, String remoteFS, String labelString) throws Descriptor.FormException, IOException {
-        super(name, "jenkins agent on clever cloud", remoteFS, 1, Mode.EXCLUSIVE, labelString, new JNLPLauncher(), STRATEGY, Collections.emptyList());
+    /**
+     * Agent has been provisioned ahead of demand to fill the {@link StandbyPool} and has not been used yet.
+     */
+    private volatile boolean standby;
+
+    /**
+     * Agent has been assigned its first build, see {@link StandbyPool#take(CleverAgent)}.
+     */
+    private transient boolean used;
+
+    private String zone;
+
+    private String flavor;
+
+    /**
+     * Queue item this agent has been sized for, see {@link FlavorAdvisor}.
+     */
+    private transient volatile long reservedFor;
+
+    public CleverAgent(String cloud, String template, String name, String organisationId, String applicationId, String remoteFS, String labelString, RetentionStrategy retentionStrategy) throws Descriptor.FormException, IOException {
+        super(name, "jenkins agent on clever cloud", remoteFS, 1, Mode.EXCLUSIVE, labelString, new JNLPLauncher(), retentionStrategy, Collections.emptyList());
         this.cloud = cloud;
+        this.template = template;
         this.organisationId = organisationId;
         this.applicationId = applicationId;
     }
 
-    private CleverCloud getCloud() {
-        for (Cloud c : Jenkins.getInstance().clouds) {
-            if (c.name.equals(cloud)) {
-                return (CleverCloud) c;
-            }
+    /* package */ CleverCloud getCloud() {
+        final CleverCloud c = AgentRegistry.get().getCloud(cloud);
+        if (c == null) {
+            throw new IllegalStateException("cloud "+cloud+" does not exists.");
         }
-        throw new IllegalStateException("cloud "+cloud+" does not exists.");
+        return c;
+    }
+
+    public String getCloudName() {
+        return cloud;
+    }
+
+    /**
+     * Display name of the {@link AgentTemplate} this agent has been created from.
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Timestamp this agent has been registered, while application was being deployed.
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * Clever Cloud zone application has been deployed to.
+     */
+    public String getZone() {
+        return zone;
+    }
+
+    /* package */ void setZone(String zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Clever Cloud flavor application runs with.
+     */
+    public String getFlavor() {
+        return flavor;
+    }
+
+    /* package */ void setFlavor(String flavor) {
+        this.flavor = flavor;
+    }
+
+    /* package */ long getReservedFor() {
+        return reservedFor;
+    }
+
+    /* package */ void setReservedFor(long reservedFor) {
+        this.reservedFor = reservedFor;
+    }
+
+    public boolean isStandby() {
+        return standby;
+    }
+
+    /* package */ void setStandby(boolean standby) {
+        this.standby = standby;
+    }
+
+    /**
+     * @return <code>true</code> the first time only
+     */
+    /* package */ synchronized boolean markUsed() {
+        if (used) return false;
+        used = true;
+        return true;
     }
 
     public String getApplicationId() {
@@ -81,7 +165,7 @@ public class CleverAgent extends AbstractCloudSlave implements EphemeralNode {
 
     @Override
     protected void _terminate(TaskListener taskListener) throws IOException, InterruptedException {
-        getCloud().terminate(this);
+        TerminationQueue.get().enqueue(applicationId);
     }
 
     @Override
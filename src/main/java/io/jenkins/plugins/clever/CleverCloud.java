@@ -27,17 +27,12 @@ package io.jenkins.plugins.clever;
 import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.common.StandardUsernameListBoxModel;
-import com.squareup.okhttp.Interceptor;
-import com.squareup.okhttp.logging.HttpLoggingInterceptor;
-import hudson.EnvVars;
 import hudson.Extension;
 import hudson.model.Computer;
 import hudson.model.Descriptor;
 import hudson.model.ItemGroup;
 import hudson.model.Label;
-import hudson.model.Node;
-import hudson.model.TaskListener;
-import hudson.plugins.git.GitException;
+import hudson.model.Queue;
 import hudson.security.ACL;
 import hudson.security.AccessControlled;
 import hudson.slaves.AbstractCloudImpl;
@@ -46,38 +41,34 @@ import hudson.slaves.NodeProvisioner;
 import hudson.util.ListBoxModel;
 import io.jenkins.plugins.clever.api.AllApi;
 import io.jenkins.plugins.clever.api.Application;
-import io.jenkins.plugins.clever.api.Deployment;
 import io.jenkins.plugins.clever.api.Instance;
 import io.jenkins.plugins.clever.api.Organisation;
-import io.jenkins.plugins.clever.api.User;
 import io.jenkins.plugins.clever.api.WannabeApplication;
 import jenkins.model.Jenkins;
 import jenkins.model.JenkinsLocationConfiguration;
 import jenkins.slaves.JnlpSlaveAgentProtocol;
-import org.apache.commons.io.FileUtils;
-import org.eclipse.jgit.transport.URIish;
-import org.jenkinsci.plugins.gitclient.Git;
-import org.jenkinsci.plugins.gitclient.GitClient;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
-import se.akerfeldt.okhttp.signpost.OkHttpOAuthConsumer;
-import se.akerfeldt.okhttp.signpost.SigningInterceptor;
 
 import javax.annotation.CheckForNull;
-import java.io.File;
 import java.io.IOException;
-import java.net.URISyntaxException;
-import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 /**
@@ -86,6 +77,7 @@ import java.util.stream.Collectors;
  */
 public class CleverCloud extends AbstractCloudImpl {
 
+    private static final Logger LOGGER = Logger.getLogger(CleverCloud.class.getName());
 
     private String credentialsId;
 
@@ -93,6 +85,20 @@ public class CleverCloud extends AbstractCloudImpl {
 
     private final List<AgentTemplate> templates;
 
+    private Integer maxConcurrentProvisioning;
+
+    private DemandForecast.Mode provisioningMode;
+
+    private int maxPredictedAgents;
+
+    private int maxInstances;
+
+    /**
+     * Template resolved for each label, see {@link #getTemplate(Label)}. Reconfiguration creates a new cloud, so
+     * this cache never gets stale.
+     */
+    private transient volatile ConcurrentMap<Label, Optional<AgentTemplate>> templatesByLabel;
+
     @DataBoundConstructor
     public CleverCloud(String name, String credentialsId, String organisationId, List<AgentTemplate> templates) {
         super(name, "10");
@@ -114,8 +120,71 @@ public class CleverCloud extends AbstractCloudImpl {
         return templates;
     }
 
+    /**
+     * Max number of agents being provisioned in parallel, see {@link ProvisioningQueue}.
+     */
+    public int getMaxConcurrentProvisioning() {
+        return maxConcurrentProvisioning != null ? maxConcurrentProvisioning : 4;
+    }
+
+    @DataBoundSetter
+    public void setMaxConcurrentProvisioning(int maxConcurrentProvisioning) {
+        this.maxConcurrentProvisioning = Math.max(1, maxConcurrentProvisioning);
+    }
+
+    /**
+     * Whether {@link CleverNodeProvisionerStrategy} should provision agents ahead of forecast demand.
+     */
+    public DemandForecast.Mode getProvisioningMode() {
+        return provisioningMode != null ? provisioningMode : DemandForecast.Mode.REACTIVE;
+    }
+
+    @DataBoundSetter
+    public void setProvisioningMode(DemandForecast.Mode provisioningMode) {
+        this.provisioningMode = provisioningMode;
+    }
+
+    /**
+     * Max number of agents provisioned ahead of demand for a label.
+     */
+    public int getMaxPredictedAgents() {
+        return maxPredictedAgents > 0 ? maxPredictedAgents : 5;
+    }
+
+    @DataBoundSetter
+    public void setMaxPredictedAgents(int maxPredictedAgents) {
+        this.maxPredictedAgents = maxPredictedAgents;
+    }
+
+    /**
+     * Max number of agents for this cloud, <code>0</code> for unlimited.
+     */
+    public int getMaxInstances() {
+        return maxInstances;
+    }
+
+    @DataBoundSetter
+    public void setMaxInstances(int maxInstances) {
+        this.maxInstances = Math.max(0, maxInstances);
+    }
+
+    /**
+     * Provision agents for this workload, less the ones already being provisioned for this label.
+     */
     @Override
     public Collection<NodeProvisioner.PlannedNode> provision(Label label, int excessWorkload) {
+        final AgentTemplate template = getTemplate(label);
+        if (template == null) {
+            return Collections.emptyList();
+        }
+        return provisionNew(label, excessWorkload - CapacityTracker.of(this).getProvisioning(template.getDisplayName()));
+    }
+
+    /**
+     * Provision this number of new agents, for callers which already account for agents being provisioned, as
+     * {@link CleverNodeProvisionerStrategy} does with {@link NodeProvisioner.StrategyState#getPlannedCapacitySnapshot()}.
+     */
+    /* package */ Collection<NodeProvisioner.PlannedNode> provisionNew(Label label, int count) {
 
         if (Jenkins.getInstance().isQuietingDown()) {
             return Collections.emptyList();
@@ -127,22 +196,48 @@ public class CleverCloud extends AbstractCloudImpl {
         }
 
         final List<PlannedNode> r = new ArrayList<>();
+        final List<CapacityTracker.Reservation> reservations = new ArrayList<>();
 
-        Set<String> allInProvisioning = getAllInProvisioning(label);
-
-        int toBeProvisioned = Math.max(0, excessWorkload - allInProvisioning.size());
+        final CapacityTracker capacity = CapacityTracker.of(this);
+        int toBeProvisioned = Math.max(0, count);
 
         for (int i = 0; i < toBeProvisioned; i++) {
+            final CapacityTracker.Reservation reservation = capacity.reserve(this, template);
+            if (reservation == null) {
+                LOGGER.log(Level.FINE, "Max instances reached for {0}, {1} agents not provisioned",
+                        new Object[]{template.getDisplayName(), toBeProvisioned - i});
+                break;
+            }
+            reservations.add(reservation);
             r.add(new PlannedNode(label, template));
         }
-
-        for (PlannedNode plannedNode : r) {
-            Computer.threadPoolForRemoting.submit(() -> {
+        final FlavorAdvisor advisor = FlavorAdvisor.get();
+
+        final ProvisioningQueue queue = ProvisioningQueue.of(this);
+        final long planned = System.currentTimeMillis();
+        for (int i = 0; i < r.size(); i++) {
+            final PlannedNode plannedNode = r.get(i);
+            final CapacityTracker.Reservation reservation = reservations.get(i);
+            final Queue.BuildableItem item = template.isRightSized() ? advisor.plan(label) : null;
+            queue.submit(label.toString(), false, () -> {
                 try {
-                    CleverAgent agent = _provision(label, template);
-                    plannedNode.promise().complete(agent);
+                    final String flavor = advisor.flavor(this, template, item);
+                    CleverAgent agent = _provision(label.toString(), template, flavor, planned, reservation,
+                            false, item != null ? item.getId() : 0);
+                    deployed(agent).whenComplete((a, t) -> {
+                        if (t == null) {
+                            plannedNode.promise().complete(a);
+                        } else {
+                            if (item != null) advisor.unplan(item.getId());
+                            plannedNode.promise().completeExceptionally(t instanceof CompletionException ? t.getCause() : t);
+                        }
+                    });
                 } catch (Throwable t) {
+                    if (item != null) advisor.unplan(item.getId());
                     plannedNode.promise().completeExceptionally(t);
+                } finally {
+                    // no-op once bound to an application
+                    reservation.cancel();
                 }
             });
         }
@@ -150,17 +245,8 @@ public class CleverCloud extends AbstractCloudImpl {
         return new ArrayList<NodeProvisioner.PlannedNode>(r);
     }
 
-    private Set<String> getAllInProvisioning(Label label) {
-
-        return label.getNodes().stream()
-                .filter(CleverAgent.class::isInstance)
-                .filter(a -> a.toComputer().isOffline()) // still provisioning
-                .map(Node::getNodeName)
-                .collect(Collectors.toSet());
-    }
-
     @CheckForNull
-    private static CleverAPICredentials getAPICredentials(String credentialsId) {
+    /* package */ static CleverAPICredentials getAPICredentials(String credentialsId) {
         return CredentialsMatchers.firstOrNull(
                 CredentialsProvider.lookupCredentials(CleverAPICredentials.class, Jenkins.getInstance(), ACL.SYSTEM, Collections.emptyList()),
                 CredentialsMatchers.withId(credentialsId)
@@ -168,27 +254,134 @@ public class CleverCloud extends AbstractCloudImpl {
     }
 
     /**
-     * Provision a new Node on Clever-Cloud.
+     * Provision a new idle Node on Clever-Cloud to fill the {@link StandbyPool} for this template, using a slot
+     * reserved by caller. Caller is responsible to cancel reservation if this fails.
+     */
+    /* package */ CleverAgent provisionStandby(AgentTemplate template, CapacityTracker.Reservation reservation) throws Exception {
+        final CleverAgent agent = _provision(template.getLabel(), template, template.getScaler(), System.currentTimeMillis(), reservation, true, 0);
+        deployed(agent);
+        return agent;
+    }
+
+    /**
+     * Provision a new Node on Clever-Cloud, using a slot reserved in {@link CapacityTracker}. Reservation is bound
+     * once application is created, caller is responsible to cancel it otherwise.
+     * @param planned timestamp this agent was planned, see {@link ProvisioningTraces}
+     * @param reservedFor queue item this agent is sized for, see {@link FlavorAdvisor.Dispatcher}, <code>0</code> if none
+     */
+    private CleverAgent _provision(String labelString, AgentTemplate template, String flavor, long planned,
+                                   CapacityTracker.Reservation reservation, boolean standby, long reservedFor) throws Exception {
+        final List<String> zones = ZoneSelector.of(this).rank(template.getZoneList());
+        final long start = System.currentTimeMillis();
+        String zone = zones.get(0);
+        boolean success = false;
+        try {
+            final CleverAgent agent = _provision(labelString, template, flavor, planned, zones, reservation, standby, reservedFor);
+            zone = agent.getZone();
+            success = true;
+            return agent;
+        } finally {
+            ProvisioningMetrics.get().record(ProvisioningMetrics.PROVISION, template.getDisplayName(), zone, start, success);
+        }
+    }
+
+    /**
+     * @param zones candidate zones, by order of preference. If we fail to create application in a zone, we fall back
+     *              to the next one.
      */
-    private CleverAgent _provision(Label label, AgentTemplate template) throws Exception {
+    private CleverAgent _provision(String labelString, AgentTemplate template, String flavor, long planned, List<String> zones,
+                                   CapacityTracker.Reservation reservation, boolean standby, long reservedFor) throws Exception {
+        final ProvisioningMetrics metrics = ProvisioningMetrics.get();
+        final ProvisioningTraces traces = ProvisioningTraces.get();
 
         final JenkinsLocationConfiguration locationConfiguration = JenkinsLocationConfiguration.get();
-        if (locationConfiguration == null) throw new IOException("Jenkins URL not set");
 
         final String agentName = UUID.randomUUID().toString();
+        traces.start(agentName, template.getDisplayName(), planned);
 
         final ApiClient c = getApiClient(getAPICredentials(credentialsId));
         final AllApi api = new AllApi(c);
+        final CircuitBreaker breaker = CircuitBreaker.of(name);
+        final CapacityTracker capacity = CapacityTracker.of(this);
+        final ZoneSelector selector = ZoneSelector.of(this);
+
+        Application created = null;
+        String selected = null;
+        try {
+            if (locationConfiguration == null) throw new IOException("Jenkins URL not set");
+            for (Iterator<String> it = zones.iterator(); created == null; ) {
+                selected = it.next();
+                try {
+                    final String candidate = selected;
+                    created = traces.time(agentName, ProvisioningTraces.Phase.APPLICATION_CREATED,
+                            () -> createApplication(api, breaker, template, flavor, agentName, candidate));
+                } catch (Exception e) {
+                    selector.failed(selected);
+                    if (!it.hasNext()) throw e;
+                    LOGGER.log(Level.INFO, "Failed to create application in zone " + selected + ", falling back to next zone", e);
+                }
+            }
+        } catch (Exception e) {
+            reservation.cancel();
+            traces.terminated(agentName);
+            throw e;
+        }
+        final Application application = created;
+        final String zone = selected;
+        reservation.bind(application.getId());
+        AgentRegistry.get().register(application.getId(), agentName, name, template.getDisplayName(), organisationId, zone);
 
-        final Optional<Instance> docker = api.getProductsInstances("").stream()
-                .filter((it) -> it.isEnabled() && it.getType().equals("docker"))
-                .findFirst();
+        final CleverAgent agent;
+        try {
+            agent = new CleverAgent(this.name, template.getDisplayName(), agentName, organisationId, application.getId(), "/home/jenkins", labelString,
+                    template.createRetentionStrategy());
+            agent.setStandby(standby);
+            agent.setZone(zone);
+            agent.setFlavor(flavor);
+            // before agent can be offered any build
+            agent.setReservedFor(reservedFor);
 
-        if (!docker.isPresent()) throw new IOException("No 'docker' instance available");
-        final Instance instance = docker.get();
+            // Register agent so it becomes a valid JNLP target
+            Jenkins.getInstance().addNode(agent);
+
+            Map<String, String> env = new HashMap<>();
+            env.put("JENKINS_URL", locationConfiguration.getUrl());
+            env.put("JENKINS_AGENT_NAME", agentName);
+            env.put("JENKINS_SECRET", JnlpSlaveAgentProtocol.SLAVE_SECRET.mac(agentName));
+            env.put("CC_MOUNT_DOCKER_SOCKET", "true");
+
+            if (!template.getCaches().isEmpty()) {
+                traces.time(agentName, ProvisioningTraces.Phase.CACHES_LINKED, () -> metrics.time(ProvisioningMetrics.LINK_CACHES, template.getDisplayName(), zone, () -> {
+                    CacheVolumes.of(this).link(this, api, breaker, application.getId(), zone, template.getCaches(), env);
+                    return null;
+                }));
+            }
+
+            traces.time(agentName, ProvisioningTraces.Phase.ENV_SET, () -> metrics.time(ProvisioningMetrics.SET_ENV, template.getDisplayName(), zone,
+                    () -> Retry.call(breaker, true, () -> api.putOrganisationsIdApplicationsAppIdEnv(organisationId, application.getId(), env))));
+
+            traces.time(agentName, ProvisioningTraces.Phase.PUSHED, () -> metrics.time(ProvisioningMetrics.GIT_PUSH, template.getDisplayName(), zone, () -> {
+                dockerRun(application, template.getDockerImage());
+                return null;
+            }));
+        } catch (Exception e) {
+            // Something went wrong, ensure we remove clever-cloud application
+            TerminationQueue.get().enqueue(application.getId());
+            capacity.provisioned(template.getDisplayName());
+            throw e;
+        }
+
+        return agent;
+    }
+
+    private Application createApplication(AllApi api, CircuitBreaker breaker, AgentTemplate template, String flavor, String agentName, String zone) throws Exception {
+        final Instance instance = Catalog.of(credentialsId).getInstance("docker");
+        if (instance == null) throw new IOException("No 'docker' instance available");
 
         WannabeApplication app = new WannabeApplication();
         app.setName("Jenkins agent "+ agentName);
+        app.setDescription(getApplicationTag());
+        app.setTags(Collections.singletonList("jenkins"));
         app.setMinInstances(1);
         app.setMaxInstances(1);
         app.setShutdownable(true);
@@ -196,119 +389,149 @@ public class CleverCloud extends AbstractCloudImpl {
         app.setInstanceType(instance.getType());
         app.setInstanceVariant(instance.getVariant().getId());
         app.setInstanceVersion(instance.getVersion());
-        app.setMinFlavor(template.getScaler());
-        app.setMaxFlavor(template.getScaler());
-        app.setZone("par"); // TODO
+        app.setMinFlavor(flavor);
+        app.setMaxFlavor(flavor);
+        app.setZone(zone);
         app.setDeploy("git"); // TODO waiting for a binary deploy API so we can just deploy 'jenkins/jnlp-slave' without a fake Dockerfile"
 
-        Application application = api.postOrganisationsIdApplications(organisationId, app);
-        final CleverAgent agent = new CleverAgent(this.name, agentName, organisationId, application.getId(), "/home/jenkins", label.toString());
+        return ProvisioningMetrics.get().time(ProvisioningMetrics.CREATE_APPLICATION, template.getDisplayName(), zone,
+                () -> Retry.call(breaker, false, () -> api.postOrganisationsIdApplications(organisationId, app)));
+    }
 
-        // Register agent so it becomes a valid JNLP target
-        Jenkins.getInstance().addNode(agent);
+    /**
+     * Track deployment for agent's application. If deployment fails, agent is removed, which in turn will delete
+     * the application.
+     */
+    private CompletableFuture<CleverAgent> deployed(CleverAgent agent) {
+        final long start = System.currentTimeMillis();
+        final CompletableFuture<Void> deployment = DeploymentTracker.of(this).track(agent.getApplicationId());
+        final Computer computer = agent.toComputer();
+        if (computer instanceof CleverComputer) ((CleverComputer) computer).followApplicationLogs(this);
+        deployment.whenComplete((v, t) -> {
+            ProvisioningMetrics.get().record(ProvisioningMetrics.DEPLOY, agent.getTemplate(), agent.getZone(), start, t == null);
+            ProvisioningTraces.get().record(agent.getNodeName(), ProvisioningTraces.Phase.DEPLOYED, start,
+                    t == null ? null : String.valueOf(t instanceof CompletionException ? t.getCause() : t));
+            CapacityTracker.of(this).provisioned(agent.getTemplate());
+            if (t == null) {
+                ZoneSelector.of(this).succeeded(agent.getZone(), System.currentTimeMillis() - agent.getCreated());
+                return;
+            }
+            ZoneSelector.of(this).failed(agent.getZone());
+            try {
+                Jenkins.getInstance().removeNode(agent);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to remove agent " + agent.getNodeName(), e);
+            }
+        });
+        return deployment.thenApply(v -> agent);
+    }
 
+    /**
+     * Delete application for a terminated agent and forget about it. Only to be called by {@link TerminationQueue}.
+     */
+    /* package */ void terminate(AgentRegistry.Entry entry) throws IOException {
+        final long start = System.currentTimeMillis();
+        boolean success = false;
         try {
-            Map<String, String> env = new HashMap<>();
-            env.put("JENKINS_URL", locationConfiguration.getUrl());
-            env.put("JENKINS_AGENT_NAME", agentName);
-            env.put("JENKINS_SECRET", JnlpSlaveAgentProtocol.SLAVE_SECRET.mac(agentName));
-            env.put("CC_MOUNT_DOCKER_SOCKET", "true");
-
-            api.putOrganisationsIdApplicationsAppIdEnv(organisationId, application.getId(), env);
-
-            dockerRun(application, template.getDockerImage());
-        } catch (Exception e) {
-            // Something went wrong, ensure we remove clever-cloud application
-            api.deleteOrganisationsIdApplicationsAppId(organisationId, application.getId());
-            throw e;
+            deleteApplication(entry.getApplicationId());
+            AgentRegistry.get().unregister(entry.getApplicationId());
+            CapacityTracker.of(this).release(entry.getApplicationId());
+            ProvisioningTraces.get().terminated(entry.getNodeName());
+            success = true;
+        } finally {
+            ProvisioningMetrics.get().record(ProvisioningMetrics.TERMINATE, entry.getTemplate(), entry.getZone(), start, success);
         }
-
-        // TODO track the deployment status
-        // final Deployment deployment = api.getOrganisationsIdApplicationsAppIdDeployments(organisationId, application.getId(), null, null, null).get(0);
-
-        return agent;
     }
 
-    public void terminate(CleverAgent agent) throws IOException {
+    /* package */ void deleteApplication(String id) throws IOException {
         final ApiClient c = getApiClient(getAPICredentials(credentialsId));
         final AllApi api = new AllApi(c);
-        final String id = agent.getApplicationId();
         try {
+            Retry.call(CircuitBreaker.of(name), true, () -> {
                 api.deleteOrganisationsIdApplicationsAppId(organisationId, id);
-            } catch (ApiException e) {
-                throw new IOException("Failed to delete Application "+id, e);
-            }
+                return null;
+            });
+        } catch (ApiException e) {
+            if (e.getCode() == 404) return; // already deleted
+            throw new IOException("Failed to delete Application "+id, e);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to delete Application "+id, e);
+        }
     }
 
-    private static boolean debug = Boolean.getBoolean(CleverCloud.class.getName()+".debug");
+    /**
+     * Applications created by this cloud on this Jenkins controller, which haven't been deleted yet.
+     * See {@link #getApplicationTag()}.
+     */
+    /* package */ List<Application> listApplications() throws Exception {
+        final AllApi api = new AllApi(getApiClient(getAPICredentials(credentialsId)));
+        final String tag = getApplicationTag();
+        final List<Application> applications = Retry.call(CircuitBreaker.of(name), true,
+                () -> api.getOrganisationsIdApplications(organisationId));
+        return applications.stream()
+                .filter(a -> tag.equals(a.getDescription()))
+                .collect(Collectors.toList());
+    }
 
-    static ApiClient getApiClient(CleverAPICredentials credentials) {
-        final ApiClient c = new ApiClient();
-        final List<Interceptor> interceptors = c.getHttpClient().interceptors();
-        if (credentials != null) {
-            OkHttpOAuthConsumer consumer = new OkHttpOAuthConsumer(credentials.getConsumerKey().getPlainText(), credentials.getConsumerSecret().getPlainText());
-            consumer.setTokenWithSecret(credentials.getToken(), credentials.getSecret().getPlainText());
-            interceptors.add(new SigningInterceptor(consumer));
-        }
+    /**
+     * Marker set as description for all applications created by this cloud, so we can tell them apart from other
+     * applications in organisation, including agents from another Jenkins controller.
+     */
+    /* package */ String getApplicationTag() {
+        return "jenkins:" + Jenkins.getInstance().getLegacyInstanceId() + ":" + name;
+    }
 
-        if (debug) {
-            final HttpLoggingInterceptor logging = new HttpLoggingInterceptor(new HttpLoggingInterceptor.Logger() {
-                @Override
-                public void log(String message) {
-                    System.out.println(message);
-                }
-            });
-            logging.setLevel(HttpLoggingInterceptor.Level.BODY);
-            interceptors.add(logging);
-        }
-        return c;
+    /**
+     * Retrieve the (shared) API client for those credentials, see {@link ApiClients}.
+     */
+    static ApiClient getApiClient(@CheckForNull CleverAPICredentials credentials) {
+        return ApiClients.get(credentials);
     }
 
 
     /**
      * Use clever API to emulate a remote <code>docker run</code> command.
-     * Which require to create a fake Dockerfile with a single <code>FROM</code> command, commit to a fake single-commit
-     * git repository and git-push to clever deploy API endpoint.
+     * Which require to git-push a fake single-commit git repository with a Dockerfile with a single <code>FROM</code>
+     * command to clever deploy API endpoint, see {@link DeployPack}.
      */
-    private void dockerRun(Application application, String dockerImage) throws IOException, InterruptedException, URISyntaxException {
-        final File tmp = Files.createTempDirectory("clever").toFile();
-        final GitClient git = Git.with(TaskListener.NULL, new EnvVars(
-                "GIT_AUTHOR_NAME=jenkins",
-                "GIT_AUTHOR_EMAIL=jenkins@dev.null",
-                "GIT_COMMITTER_NAME=jenkins",
-                "GIT_COMMITTER_EMAIL=jenkins@dev.null"
-        )).in(tmp).using("jgit").getClient();
-        git.init();
-
-        // Unfortunately we can't (yet) rely on a binary deployment API to just run jenkins/jnlp-slave
-        FileUtils.writeStringToFile(new File(tmp, "Dockerfile"), "FROM "+dockerImage);
-        git.add("Dockerfile");
-        git.commit("Deploy jenkins agent on clever cloud");
-
+    private void dockerRun(Application application, String dockerImage) throws Exception {
+        final DeployPack pack = DeployPack.of(dockerImage);
         final String remote = application.getDeployment().getHttpUrl();
-        git.addDefaultCredentials(getAPICredentials(credentialsId));
+        final CleverAPICredentials credentials = getAPICredentials(credentialsId);
 
-        int maxTries = 5;
-        while(true) {
-            try {
-                git.push().to(new URIish(remote)).execute();
-                return;
-            } catch (GitException e) {
-                if (--maxTries < 0) throw e;
-                Thread.sleep(500);
-            }
-        }
+        Retry.call(CircuitBreaker.of(name), true, () -> {
+            pack.push(remote, credentials);
+            return null;
+        });
     }
 
     @Override
     public boolean canProvision(Label label) {
         AgentTemplate template = getTemplate(label);
-        return (template != null);
+        return (template != null) && CircuitBreaker.of(name).allowsRequests();
+    }
+
+    @CheckForNull
+    /* package */ AgentTemplate getTemplate(Label label) {
+        if (label == null) return null;
+        ConcurrentMap<Label, Optional<AgentTemplate>> cache = templatesByLabel;
+        if (cache == null) {
+            templatesByLabel = cache = new ConcurrentHashMap<>();
+        }
+        return cache.computeIfAbsent(label, l -> {
+            for (AgentTemplate template : templates) {
+                if (template.matches(l)) return Optional.of(template);
+            }
+            return Optional.empty();
+        }).orElse(null);
     }
 
-    private AgentTemplate getTemplate(Label label) {
+    @CheckForNull
+    /* package */ AgentTemplate getTemplate(String displayName) {
         for (AgentTemplate template : templates) {
-            if (template.matches(label)) return template;
+            if (template.getDisplayName().equals(displayName)) return template;
         }
         return null;
     }
@@ -331,7 +554,18 @@ public class CleverCloud extends AbstractCloudImpl {
             return new StandardUsernameListBoxModel().includeAs(ACL.SYSTEM, context, CleverAPICredentials.class);
         }
 
+        public ListBoxModel doFillProvisioningModeItems() {
+            final ListBoxModel options = new ListBoxModel();
+            options.add("Provision for queued builds", DemandForecast.Mode.REACTIVE.name());
+            options.add("Log forecast demand only (dry-run)", DemandForecast.Mode.DRY_RUN.name());
+            options.add("Provision ahead of forecast demand", DemandForecast.Mode.PREDICTIVE.name());
+            return options;
+        }
+
         public ListBoxModel doFillOrganisationIdItems(@QueryParameter("credentialsId") String credentialsId) {
+            if (!Jenkins.getInstance().hasPermission(Jenkins.ADMINISTER)) {
+                return new ListBoxModel();
+            }
 
             if (credentialsId.length() == 0) {
                 // When form render, credentialsId is only set once doFillCredentialsIdItems populates the select box
@@ -343,12 +577,9 @@ public class CleverCloud extends AbstractCloudImpl {
                 }
             }
 
-            final AllApi api = new AllApi(getApiClient(getAPICredentials(credentialsId)));
             ListBoxModel model = new ListBoxModel();
             try {
-                final User self = api.getSelf();
-                final List<Organisation> organisations = api.getOrganisations(self.getId()); // can't set null ?
-                for (Organisation me : organisations) {
+                for (Organisation me : Catalog.of(credentialsId).getOrganisations()) {
                     model.add(me.getName(), me.getId());
                 }
             } catch (ApiException e) {
@@ -357,17 +588,4 @@ public class CleverCloud extends AbstractCloudImpl {
             return model;
         }
     }
-
-    // Cleanup code used during development as we get dozen apps created
-    // And unfortunately no simple way to prune them using CLI
-    /*
-    public Object readResolve() throws ApiException {
-        final ApiClient c = getApiClient(getAPICredentials(credentialsId));
-        final AllApi api = new AllApi(c);
-        for (Application application : api.getOrganisationsIdApplications(organisationId)) {
-            api.deleteOrganisationsIdApplicationsAppId(organisationId, application.getId());
-        }
-        return this;
-    }
-    */
 }
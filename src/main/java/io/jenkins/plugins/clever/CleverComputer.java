@@ -3,8 +3,8 @@ package io.jenkins.plugins.clever;
 import hudson.slaves.AbstractCloudComputer;
 
 import javax.annotation.CheckForNull;
-import java.io.IOException;
-import java.util.logging.Level;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
@@ -17,6 +17,17 @@ public class CleverComputer extends AbstractCloudComputer<CleverAgent> {
     // once created CleverCloudAgent is never reconfigured, so we can keep a reference like this.
     private final CleverAgent agent;
 
+    private final AtomicInteger builds = new AtomicInteger();
+
+    private static final int LOG_CAPACITY = Integer.getInteger(CleverComputer.class.getName() + ".logCapacity", 32 * 1024);
+
+    /**
+     * Last lines of the Clever Cloud application log, see {@link ApplicationLogs}.
+     */
+    private final LogBuffer applicationLog = new LogBuffer(LOG_CAPACITY);
+
+    private volatile ApplicationLogs logs;
+
     public CleverComputer(CleverAgent agent) {
         super(agent);
         this.agent = agent;
@@ -28,17 +39,61 @@ public class CleverComputer extends AbstractCloudComputer<CleverAgent> {
         return agent;
     }
 
+    /**
+     * Registry entry for this agent's application.
+     */
+    @CheckForNull
+    public AgentRegistry.Entry getRegistryEntry() {
+        return AgentRegistry.get().get(agent.getApplicationId());
+    }
+
+    /**
+     * Record a build has completed on this computer.
+     * @return number of builds this computer has run so far
+     */
+    /* package */ int buildCompleted() {
+        return builds.incrementAndGet();
+    }
+
+    /**
+     * Start following application logs while agent is being deployed.
+     */
+    /* package */ void followApplicationLogs(CleverCloud cloud) {
+        if (logs != null) return;
+        logs = ApplicationLogs.follow(cloud, this, agent.getApplicationId());
+    }
+
+    /* package */ void stopFollowingApplicationLogs() {
+        final ApplicationLogs l = logs;
+        if (l != null) l.stop();
+    }
+
+    /* package */ void applicationLog(String line) {
+        applicationLog.append(line);
+        getListener().getLogger().println("[" + agent.getApplicationId() + "] " + line);
+    }
+
+    /**
+     * Provisioning timeline for this agent, see {@link ProvisioningTraces}.
+     */
+    @CheckForNull
+    public ProvisioningTraces.Trace getTrace() {
+        return ProvisioningTraces.get().get(agent.getNodeName());
+    }
+
+    public List<String> getApplicationLog() {
+        return applicationLog.getLines();
+    }
+
+    public long getApplicationLogDropped() {
+        return applicationLog.getDropped();
+    }
+
     @Override
     protected void onRemoved() {
-        threadPoolForRemoting.submit(() -> {
-                try {
-                    agent.terminate();
-                } catch (IOException e) {
-                    LOGGER.log(Level.WARNING, "Failed to terminate " + getDisplayName(), e);
-                } catch (InterruptedException e) {
-                    LOGGER.log(Level.WARNING, "Failed to terminate " + getDisplayName(), e);
-                }
-        });
+        stopFollowingApplicationLogs();
+        // node may have been removed without being terminated, typically from UI
+        TerminationQueue.get().enqueue(agent.getApplicationId());
     }
 
 }
@@ -7,7 +7,12 @@ import hudson.slaves.Cloud;
 import hudson.slaves.NodeProvisioner;
 import jenkins.model.Jenkins;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -22,6 +27,11 @@ public class CleverNodeProvisionerStrategy extends NodeProvisioner.Strategy {
 
     private static final Logger LOGGER = Logger.getLogger(CleverNodeProvisionerStrategy.class.getName());
 
+    /**
+     * Last dry run decision, indexed by <code>cloud/label</code>.
+     */
+    private final ConcurrentMap<String, Integer> dryRun = new ConcurrentHashMap<>();
+
     @Override
     public NodeProvisioner.StrategyDecision apply(NodeProvisioner.StrategyState strategyState) {
         final Label label = strategyState.getLabel();
@@ -37,18 +47,19 @@ public class CleverNodeProvisionerStrategy extends NodeProvisioner.Strategy {
                 new Object[]{availableCapacity, currentDemand});
         if (availableCapacity < currentDemand) {
 
+            final List<Cloud> clouds = new ArrayList<>();
             for (Cloud cloud : Jenkins.getInstance().clouds) {
-                if (!cloud.canProvision(label)) continue;
-
-                Collection<NodeProvisioner.PlannedNode> plannedNodes = cloud.provision(label, currentDemand - availableCapacity);
-                LOGGER.log(Level.FINE, "Planned {0} new nodes", plannedNodes.size());
-                strategyState.recordPendingLaunches(plannedNodes);
-                availableCapacity += plannedNodes.size();
-                LOGGER.log(Level.FINE, "After provisioning, available capacity={0}, currentDemand={1}",
-                        new Object[]{availableCapacity, currentDemand});
-                break;
+                if (cloud.canProvision(label)) clouds.add(cloud);
             }
+            final int planned = provision(clouds, label, currentDemand - availableCapacity, strategyState::recordPendingLaunches);
+            LOGGER.log(Level.FINE, "Planned {0} new nodes", planned);
+            availableCapacity += planned;
+            LOGGER.log(Level.FINE, "After provisioning, available capacity={0}, currentDemand={1}",
+                    new Object[]{availableCapacity, currentDemand});
         }
+
+        availableCapacity += provisionAhead(strategyState, label, availableCapacity, currentDemand);
+
         if (availableCapacity >= currentDemand) {
             LOGGER.log(Level.FINE, "Provisioning completed");
             return NodeProvisioner.StrategyDecision.PROVISIONING_COMPLETED;
@@ -58,4 +69,135 @@ public class CleverNodeProvisionerStrategy extends NodeProvisioner.Strategy {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Provision new agents from the first of these clouds which can plan any. Clever clouds share the workload in place
+     * of the first of them, see {@link #spread}, so other clouds keep their precedence.
+     * @param clouds which can provision label, in configuration order
+     * @param launches planned nodes are reported to
+     * @return capacity added
+     */
+    /* package */ static int provision(List<Cloud> clouds, Label label, int excess,
+                                       Consumer<Collection<NodeProvisioner.PlannedNode>> launches) {
+        final List<CleverCloud> clevers = new ArrayList<>();
+        for (Cloud cloud : clouds) {
+            if (cloud instanceof CleverCloud) clevers.add((CleverCloud) cloud);
+        }
+
+        boolean spread = false;
+        for (Cloud cloud : clouds) {
+            int planned;
+            if (cloud instanceof CleverCloud) {
+                if (spread) continue;
+                spread = true;
+                planned = spread(label, clevers, excess, launches);
+            } else {
+                final Collection<NodeProvisioner.PlannedNode> plannedNodes = cloud.provision(label, excess);
+                launches.accept(plannedNodes);
+                planned = plannedNodes.size();
+            }
+            if (planned > 0) return planned;
+        }
+        return 0;
+    }
+
+    /**
+     * Spread new agents across all Clever clouds which can provision this label, in proportion to how fast each one
+     * has recently been to provide a healthy agent (see {@link ZoneSelector}), within their remaining capacity. Clouds
+     * we have no measure for yet get the average weight, so they get a chance to prove themselves.
+     * <p>
+     * Agents being provisioned are already part of the planned capacity <code>excess</code> is computed from, so each
+     * cloud provisions its share as is, see {@link CleverCloud#provisionNew(Label, int)}.
+     * @return capacity added
+     */
+    private static int spread(Label label, List<CleverCloud> clouds, int excess,
+                              Consumer<Collection<NodeProvisioner.PlannedNode>> launches) {
+        if (clouds.isEmpty() || excess <= 0) return 0;
+
+        final int n = clouds.size();
+        final double[] weights = new double[n];
+        final int[] remaining = new int[n];
+        double known = 0;
+        int measured = 0;
+        for (int i = 0; i < n; i++) {
+            final CleverCloud cloud = clouds.get(i);
+            final AgentTemplate template = cloud.getTemplate(label);
+            if (template == null) continue;
+            remaining[i] = CapacityTracker.of(cloud).getRemaining(cloud, template);
+            final double latency = ZoneSelector.of(cloud).best(template.getZoneList());
+            if (latency > 0) {
+                weights[i] = 1 / latency;
+                known += weights[i];
+                measured++;
+            }
+        }
+        final double average = measured > 0 ? known / measured : 1;
+        for (int i = 0; i < n; i++) {
+            if (weights[i] == 0) weights[i] = average;
+        }
+
+        // highest averages method, so shares are proportional to weights while respecting each cloud's capacity
+        final int[] shares = new int[n];
+        for (int k = 0; k < excess; k++) {
+            int best = -1;
+            for (int i = 0; i < n; i++) {
+                if (shares[i] >= remaining[i]) continue;
+                if (best < 0 || weights[i] / (shares[i] + 1) > weights[best] / (shares[best] + 1)) best = i;
+            }
+            if (best < 0) break;
+            shares[best]++;
+        }
+
+        int planned = 0;
+        for (int i = 0; i < n; i++) {
+            if (shares[i] == 0) continue;
+            final Collection<NodeProvisioner.PlannedNode> plannedNodes = clouds.get(i).provisionNew(label, shares[i]);
+            LOGGER.log(Level.FINE, "Planned {0}/{1} nodes on cloud {2}",
+                    new Object[]{plannedNodes.size(), shares[i], clouds.get(i).name});
+            launches.accept(plannedNodes);
+            planned += plannedNodes.size();
+        }
+        return planned;
+    }
+
+    /**
+     * Provision agents for builds we expect to enter queue while a new agent would be provisioned, according to
+     * {@link DemandForecast}.
+     * @return capacity added
+     */
+    private int provisionAhead(NodeProvisioner.StrategyState strategyState, Label label, int availableCapacity, int currentDemand) {
+        if (label == null) return 0;
+        for (Cloud cloud : Jenkins.getInstance().clouds) {
+            if (!cloud.canProvision(label)) continue;
+            if (!(cloud instanceof CleverCloud)) return 0;
+
+            final CleverCloud clever = (CleverCloud) cloud;
+            final DemandForecast.Mode mode = clever.getProvisioningMode();
+            if (mode == DemandForecast.Mode.REACTIVE) return 0;
+
+            final AgentTemplate template = clever.getTemplate(label);
+            if (template == null) return 0;
+            final DemandForecast.Forecast forecast = DemandForecast.get().forecast(label, clever.name,
+                    template.getDisplayName(), strategyState.getSnapshot().getBusyExecutors(), template.isReusable());
+            final int expected = Math.min(forecast.expected, clever.getMaxPredictedAgents());
+            final int excess = currentDemand + expected - availableCapacity;
+
+            if (mode == DemandForecast.Mode.DRY_RUN) {
+                // strategy runs every few seconds, only report decision when it changes
+                final int would = Math.max(0, excess);
+                final Integer previous = dryRun.put(clever.name + "/" + label.getExpression(), would);
+                final boolean changed = previous != null ? previous != would : would > 0;
+                LOGGER.log(changed ? Level.INFO : Level.FINE, "Predictive provisioning for {0} ({1}) would provision {2} more agents",
+                        new Object[]{label, forecast, would});
+                return 0;
+            }
+            if (excess <= 0) return 0;
+
+            LOGGER.log(Level.FINE, "Predictive provisioning for {0} ({1}), provisioning {2} more agents",
+                    new Object[]{label, forecast, excess});
+            Collection<NodeProvisioner.PlannedNode> plannedNodes = clever.provisionNew(label, excess);
+            strategyState.recordPendingLaunches(plannedNodes);
+            return plannedNodes.size();
+        }
+        return 0;
+    }
+}
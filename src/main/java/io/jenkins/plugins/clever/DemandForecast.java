@@ -0,0 +1,168 @@
+package io.jenkins.plugins.clever;
+
+import hudson.Extension;
+import hudson.model.Label;
+import hudson.model.Queue;
+import hudson.model.queue.QueueListener;
+
+import javax.annotation.CheckForNull;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keep track of build queue history per label, so we can forecast demand and provision agents ahead of it.
+ * <p>
+ * For each label we maintain an exponentially weighted arrival rate of queue items and build duration, and for each
+ * template the agent provisioning lead time. Expected demand is the number of items we expect to enter queue while a
+ * new agent would be provisioned.
+ */
+public final class DemandForecast {
+
+    private static final DemandForecast INSTANCE = new DemandForecast();
+
+    /**
+     * Time constant for arrival rate decay, i.e. how far in the past we look at.
+     */
+    private static final double TAU = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Smoothing factor for durations.
+     */
+    private static final double ALPHA = 0.2;
+
+    private final ConcurrentMap<String, LabelHistory> history = new ConcurrentHashMap<>();
+
+    /**
+     * Provisioning lead time, indexed by <code>cloud/template</code>. Queue items' label expressions don't have to
+     * match the template's label string, so lead time can't be tracked per label.
+     */
+    private final ConcurrentMap<String, LeadTime> leadTimes = new ConcurrentHashMap<>();
+
+    static DemandForecast get() {
+        return INSTANCE;
+    }
+
+    /**
+     * How to use forecast.
+     */
+    public enum Mode {
+        /** only provision for items already in queue */
+        REACTIVE,
+        /** compute forecast and log what would be provisioned, but only provision for items already in queue */
+        DRY_RUN,
+        /** provision ahead of forecast demand */
+        PREDICTIVE
+    }
+
+    void arrived(@CheckForNull Label label) {
+        if (label == null) return;
+        of(label.getExpression()).arrived(System.currentTimeMillis());
+    }
+
+    void completed(@CheckForNull Label label, long duration) {
+        if (label == null) return;
+        of(label.getExpression()).completed(duration);
+    }
+
+    void provisioned(String cloud, String template, long leadTime) {
+        leadTimes.computeIfAbsent(key(cloud, template), k -> new LeadTime()).provisioned(leadTime);
+    }
+
+    /**
+     * Number of items expected to enter queue during provisioning lead time for this template, minus the ones we
+     * expect reusable agents to take after completing their current build.
+     */
+    Forecast forecast(Label label, String cloud, String template, int busy, boolean reusable) {
+        final LabelHistory h = history.get(label.getExpression());
+        if (h == null) return new Forecast(0, 0, 0, 0);
+        final LeadTime l = leadTimes.get(key(cloud, template));
+        return h.forecast(System.currentTimeMillis(), l != null ? l.get() : 0, busy, reusable);
+    }
+
+    private static String key(String cloud, String template) {
+        return cloud + "/" + template;
+    }
+
+    private LabelHistory of(String label) {
+        return history.computeIfAbsent(label, l -> new LabelHistory());
+    }
+
+    static final class Forecast {
+        /** items per minute */
+        final double arrivalRate;
+        /** ms */
+        final long duration;
+        /** ms */
+        final long leadTime;
+        final int expected;
+
+        Forecast(double arrivalRate, long duration, long leadTime, int expected) {
+            this.arrivalRate = arrivalRate;
+            this.duration = duration;
+            this.leadTime = leadTime;
+            this.expected = expected;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("arrival rate=%.2f/min, build duration=%ds, lead time=%ds, expected=%d",
+                    arrivalRate, duration / 1000, leadTime / 1000, expected);
+        }
+    }
+
+    private static final class LabelHistory {
+
+        /** guarded by this, decaying count of arrivals, normalized by TAU */
+        private double rate;
+        private long lastArrival;
+        private double duration;
+
+        synchronized void arrived(long now) {
+            rate = decayed(now) + 1 / TAU;
+            lastArrival = now;
+        }
+
+        synchronized void completed(long d) {
+            duration = duration == 0 ? d : ALPHA * d + (1 - ALPHA) * duration;
+        }
+
+        synchronized Forecast forecast(long now, double leadTime, int busy, boolean reusable) {
+            final double r = decayed(now); // arrivals per ms
+            double expected = r * leadTime;
+            if (reusable && duration > 0) {
+                // busy agents will complete their build and be available for next one
+                expected -= busy * Math.min(1, leadTime / duration);
+            }
+            return new Forecast(r * TimeUnit.MINUTES.toMillis(1), (long) duration, (long) leadTime,
+                    Math.max(0, (int) Math.floor(expected)));
+        }
+
+        private double decayed(long now) {
+            return lastArrival == 0 ? 0 : rate * Math.exp(-(now - lastArrival) / TAU);
+        }
+    }
+
+    private static final class LeadTime {
+
+        /** guarded by this */
+        private double leadTime;
+
+        synchronized void provisioned(long l) {
+            leadTime = leadTime == 0 ? l : ALPHA * l + (1 - ALPHA) * leadTime;
+        }
+
+        synchronized double get() {
+            return leadTime;
+        }
+    }
+
+    @Extension
+    public static class QueueArrivals extends QueueListener {
+
+        @Override
+        public void onEnterWaiting(Queue.WaitingItem wi) {
+            get().arrived(wi.getAssignedLabel());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package io.jenkins.plugins.clever;
+
+import hudson.Util;
+import org.eclipse.jgit.errors.TransportException;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.RemoteRefUpdate;
+import org.eclipse.jgit.transport.Transport;
+import org.eclipse.jgit.transport.URIish;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+
+import javax.annotation.CheckForNull;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The single-commit git repository we push to Clever Cloud to run a docker image, with a fake
+ * <code>Dockerfile</code> which only has a <code>FROM</code> instruction.
+ * <p>
+ * Repository is built once per docker image, as a bare repository in a temporary directory, and kept for reuse.
+ * Commit uses a fixed author and date, so the commit ID only depends on the docker image and Clever Cloud can reuse
+ * a previous build for the same commit.
+ */
+final class DeployPack implements Closeable {
+
+    private static final ConcurrentMap<String, DeployPack> PACKS = new ConcurrentHashMap<>();
+
+    private static final String BRANCH = Constants.R_HEADS + Constants.MASTER;
+
+    private static final PersonIdent JENKINS = new PersonIdent("jenkins", "jenkins@dev.null", new Date(0), TimeZone.getTimeZone("UTC"));
+
+    private final File directory;
+
+    private final Repository repository;
+
+    private final ObjectId commit;
+
+    /* package */ DeployPack(String dockerImage) throws IOException {
+        directory = Files.createTempDirectory("clever-deploy").toFile();
+        try {
+            repository = new FileRepositoryBuilder().setGitDir(directory).setBare().build();
+            repository.create(true);
+        } catch (IOException | RuntimeException e) {
+            Util.deleteRecursive(directory);
+            throw e;
+        }
+        try {
+            commit = commit(dockerImage);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private ObjectId commit(String dockerImage) throws IOException {
+        final ObjectId commit;
+        try (ObjectInserter inserter = repository.newObjectInserter()) {
+            // Unfortunately we can't (yet) rely on a binary deployment API to just run jenkins/jnlp-slave
+            final ObjectId dockerfile = inserter.insert(Constants.OBJ_BLOB, ("FROM " + dockerImage).getBytes(StandardCharsets.UTF_8));
+
+            final TreeFormatter tree = new TreeFormatter();
+            tree.append("Dockerfile", FileMode.REGULAR_FILE, dockerfile);
+
+            final CommitBuilder c = new CommitBuilder();
+            c.setTreeId(inserter.insert(tree));
+            c.setAuthor(JENKINS);
+            c.setCommitter(JENKINS);
+            c.setMessage("Deploy jenkins agent on clever cloud");
+            commit = inserter.insert(c);
+            inserter.flush();
+        }
+
+        final RefUpdate update = repository.updateRef(BRANCH);
+        update.setNewObjectId(commit);
+        final RefUpdate.Result result = update.update();
+        if (result != RefUpdate.Result.NEW) {
+            throw new IOException("Failed to create deploy repository for " + dockerImage + ": " + result);
+        }
+        return commit;
+    }
+
+    static DeployPack of(String dockerImage) throws IOException {
+        try {
+            return PACKS.computeIfAbsent(dockerImage, image -> {
+                try {
+                    return new DeployPack(image);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    ObjectId getCommit() {
+        return commit;
+    }
+
+    /**
+     * Push deploy commit to a Clever Cloud application git repository.
+     * @throws TransportException on communication failure, which is worth a retry.
+     * @throws PushRejectedException if remote refused the commit
+     */
+    void push(String remote, @CheckForNull CleverAPICredentials credentials) throws IOException, URISyntaxException {
+        try (Transport transport = Transport.open(repository, new URIish(remote))) {
+            if (credentials != null) {
+                transport.setCredentialsProvider(new UsernamePasswordCredentialsProvider(
+                        credentials.getUsername(), credentials.getPassword().getPlainText()));
+            }
+            final RemoteRefUpdate update = new RemoteRefUpdate(repository, BRANCH, BRANCH, true, null, null);
+            final PushResult result = transport.push(NullProgressMonitor.INSTANCE, Collections.singleton(update));
+            final RemoteRefUpdate.Status status = result.getRemoteUpdate(BRANCH).getStatus();
+            if (status != RemoteRefUpdate.Status.OK && status != RemoteRefUpdate.Status.UP_TO_DATE) {
+                throw new PushRejectedException("Failed to push to " + remote + ": " + status);
+            }
+        }
+    }
+
+    /**
+     * Discard repository. Only meant for packs which are not cached by {@link #of(String)}.
+     */
+    @Override
+    public void close() throws IOException {
+        repository.close();
+        Util.deleteRecursive(directory);
+    }
+
+    /**
+     * Remote git repository did process our push, but didn't accept it.
+     */
+    static final class PushRejectedException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        PushRejectedException(String message) {
+            super(message);
+        }
+    }
+}
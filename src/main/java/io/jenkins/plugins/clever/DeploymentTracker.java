@@ -0,0 +1,316 @@
+package io.jenkins.plugins.clever;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import com.squareup.okhttp.ws.WebSocket;
+import com.squareup.okhttp.ws.WebSocketCall;
+import com.squareup.okhttp.ws.WebSocketListener;
+import jenkins.util.Timer;
+import okio.Buffer;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Track deployment of agents' applications on Clever Cloud, so we know as soon as possible a deployment failed
+ * (or succeeded) rather than waiting for an agent which will never connect.
+ * <p>
+ * A single connection to Clever Cloud events websocket is shared by all deployments for a cloud. While this
+ * connection is down, we fall back to polling application deployments.
+ */
+final class DeploymentTracker {
+
+    private static final Logger LOGGER = Logger.getLogger(DeploymentTracker.class.getName());
+
+    /* package */ static long timeout = TimeUnit.MINUTES.toMillis(Integer.getInteger(DeploymentTracker.class.getName() + ".timeoutMinutes", 15));
+
+    /* package */ static long pollPeriod = TimeUnit.SECONDS.toMillis(10);
+
+    /**
+     * When websocket is connected, we still poll once in a while, just in case some event got lost.
+     */
+    private static final int POLL_RATIO = 6;
+
+    private static final ConcurrentMap<String, DeploymentTracker> TRACKERS = new ConcurrentHashMap<>();
+
+    private final String cloud;
+
+    private volatile String credentialsId;
+
+    private volatile String organisationId;
+
+    private final ConcurrentMap<String, Pending> pending = new ConcurrentHashMap<>();
+
+    /** guarded by this */
+    private WebSocketCall call;
+
+    /** guarded by this */
+    private WebSocket socket;
+
+    /** guarded by this */
+    private ScheduledFuture<?> poller;
+
+    private int ticks;
+
+    private DeploymentTracker(String cloud) {
+        this.cloud = cloud;
+    }
+
+    static DeploymentTracker of(CleverCloud cloud) {
+        final DeploymentTracker tracker = TRACKERS.computeIfAbsent(cloud.name, DeploymentTracker::new);
+        tracker.credentialsId = cloud.getCredentialsId();
+        tracker.organisationId = cloud.getOrganisationId();
+        return tracker;
+    }
+
+    @CheckForNull
+    static DeploymentTracker of(String cloud) {
+        return TRACKERS.get(cloud);
+    }
+
+    /**
+     * Start tracking deployment for an application.
+     * @return a future which completes once application has been successfully deployed, or completes
+     * exceptionally if deployment failed.
+     */
+    CompletableFuture<Void> track(String applicationId) {
+        final Pending p = pending.computeIfAbsent(applicationId, id -> new Pending());
+        start();
+        return p.future;
+    }
+
+    /**
+     * Agent for this application did connect, so we know for sure deployment was successful.
+     */
+    void ready(String applicationId) {
+        complete(applicationId, null);
+    }
+
+    private void complete(String applicationId, @CheckForNull String failure) {
+        final Pending p = pending.remove(applicationId);
+        if (p == null) return;
+        if (failure == null) {
+            LOGGER.log(Level.FINE, "Application {0} deployed", applicationId);
+            p.future.complete(null);
+        } else {
+            LOGGER.log(Level.INFO, "Application {0} failed to deploy: {1}", new Object[]{applicationId, failure});
+            p.future.completeExceptionally(new IOException("Application " + applicationId + " failed to deploy: " + failure));
+        }
+    }
+
+    private synchronized void start() {
+        if (poller == null) {
+            poller = Timer.get().scheduleWithFixedDelay(this::tick, pollPeriod, pollPeriod, TimeUnit.MILLISECONDS);
+        }
+        if (call == null) {
+            connect();
+        }
+    }
+
+    private synchronized void stop() {
+        if (!pending.isEmpty()) return;
+        if (poller != null) {
+            poller.cancel(false);
+            poller = null;
+        }
+        if (socket != null) {
+            try {
+                socket.close(1000, "no more deployment to track");
+            } catch (IOException | IllegalStateException e) {
+                LOGGER.log(Level.FINE, "Failed to close events socket", e);
+            }
+        } else if (call != null) {
+            call.cancel();
+        }
+        socket = null;
+        call = null;
+    }
+
+    /* guarded by this */
+    private void connect() {
+        final CleverAPICredentials credentials = CleverCloud.getAPICredentials(credentialsId);
+        if (credentials == null) return; // we'll have to rely on polling
+
+        final ApiClient c = CleverCloud.getApiClient(credentials);
+        final Request request = new Request.Builder().url(c.getBasePath() + "/events/event-socket").build();
+        final String authorization;
+        try {
+            authorization = ApiClients.authorization(credentials, request);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to authenticate on Clever Cloud events socket", e);
+            return;
+        }
+
+        final WebSocketCall ws = WebSocketCall.create(c.getHttpClient(), request);
+        call = ws;
+        ws.enqueue(new WebSocketListener() {
+            @Override
+            public void onOpen(WebSocket webSocket, Response response) {
+                final JsonObject auth = new JsonObject();
+                auth.addProperty("message_type", "oauth");
+                auth.addProperty("authorization", authorization);
+                try {
+                    webSocket.sendMessage(RequestBody.create(WebSocket.TEXT, auth.toString()));
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to authenticate on Clever Cloud events socket", e);
+                    return;
+                }
+                synchronized (DeploymentTracker.this) {
+                    if (call == ws) socket = webSocket;
+                }
+                LOGGER.log(Level.FINE, "Connected to Clever Cloud events for cloud {0}", cloud);
+            }
+
+            @Override
+            public void onMessage(ResponseBody message) throws IOException {
+                try {
+                    onEvent(message.string());
+                } finally {
+                    message.close();
+                }
+            }
+
+            @Override
+            public void onPong(Buffer payload) {
+            }
+
+            @Override
+            public void onFailure(IOException e, Response response) {
+                LOGGER.log(Level.FINE, "Clever Cloud events socket failed, fall back to polling", e);
+                disconnected(ws);
+            }
+
+            @Override
+            public void onClose(int code, String reason) {
+                LOGGER.log(Level.FINE, "Clever Cloud events socket closed: {0}", reason);
+                disconnected(ws);
+            }
+        });
+    }
+
+    private synchronized void disconnected(WebSocketCall ws) {
+        if (call != ws) return;
+        call = null;
+        socket = null;
+        // next tick will reconnect if we still have deployments to track
+    }
+
+    private void onEvent(String message) {
+        final JsonObject event = new JsonParser().parse(message).getAsJsonObject();
+        if (!event.has("type")) return;
+        final String type = event.get("type").getAsString();
+        if (!"DEPLOYMENT_ACTION_BEGIN".equals(type) && !"DEPLOYMENT_ACTION_END".equals(type)) return;
+
+        JsonElement data = event.get("data");
+        if (data == null) return;
+        if (data.isJsonPrimitive()) {
+            // event data is sent as a json encoded string
+            data = new JsonParser().parse(data.getAsString());
+        }
+        final JsonObject d = data.getAsJsonObject();
+        if (!d.has("appId")) return;
+
+        final String applicationId = d.get("appId").getAsString();
+        if ("DEPLOYMENT_ACTION_BEGIN".equals(type)) {
+            if (pending.containsKey(applicationId)) {
+                ProvisioningTraces.get().recordApplication(applicationId, ProvisioningTraces.Phase.BUILD_STARTED);
+            }
+            return;
+        }
+        if (!d.has("state")) return;
+        final String state = d.get("state").getAsString();
+        complete(applicationId, "OK".equals(state) ? null : state);
+    }
+
+    private void tick() {
+        try {
+            final long now = System.currentTimeMillis();
+            for (Map.Entry<String, Pending> e : pending.entrySet()) {
+                if (now - e.getValue().since > timeout) {
+                    complete(e.getKey(), "timeout");
+                }
+            }
+            if (pending.isEmpty()) {
+                stop();
+                return;
+            }
+
+            final boolean connected;
+            synchronized (this) {
+                if (call == null) connect();
+                connected = socket != null;
+            }
+            if (!connected || ++ticks % POLL_RATIO == 0) {
+                poll();
+            }
+        } catch (Throwable t) {
+            LOGGER.log(Level.WARNING, "Failed to track Clever Cloud deployments", t);
+        }
+    }
+
+    /**
+     * Check last deployment's state for all tracked applications. Skipped while API is known to be unavailable.
+     * Generated API model for deployments doesn't expose the deployment state, so we parse raw response.
+     */
+    private void poll() throws Exception {
+        final CircuitBreaker breaker = CircuitBreaker.of(cloud);
+        if (!breaker.allowsRequests()) return;
+        final ApiClient c = CleverCloud.getApiClient(CleverCloud.getAPICredentials(credentialsId));
+        for (String applicationId : pending.keySet()) {
+            final JsonArray deployments;
+            try {
+                deployments = Retry.call(breaker, true, () -> lastDeployment(c, applicationId));
+            } catch (ApiException e) {
+                LOGGER.log(Level.FINE, "Failed to retrieve deployments for application " + applicationId, e);
+                continue;
+            }
+            if (deployments.size() == 0) continue;
+            final JsonObject deployment = deployments.get(0).getAsJsonObject();
+            if (!deployment.has("state")) continue;
+            final String state = deployment.get("state").getAsString();
+            switch (state) {
+                case "OK":
+                    complete(applicationId, null);
+                    break;
+                case "FAIL":
+                case "CANCELLED":
+                    complete(applicationId, state);
+                    break;
+                default:
+                    // WIP
+            }
+        }
+    }
+
+    private JsonArray lastDeployment(ApiClient c, String applicationId) throws IOException, ApiException {
+        final Request request = new Request.Builder()
+                .url(c.getBasePath() + "/organisations/" + organisationId + "/applications/" + applicationId + "/deployments?limit=1")
+                .build();
+        final Response response = c.getHttpClient().newCall(request).execute();
+        try {
+            if (!response.isSuccessful()) throw new ApiException(response.code(), response.message());
+            return new JsonParser().parse(response.body().string()).getAsJsonArray();
+        } finally {
+            response.body().close();
+        }
+    }
+
+    private static final class Pending {
+        private final long since = System.currentTimeMillis();
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+    }
+}
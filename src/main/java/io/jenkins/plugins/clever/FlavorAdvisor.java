@@ -0,0 +1,385 @@
+package io.jenkins.plugins.clever;
+
+import hudson.Extension;
+import hudson.model.Computer;
+import hudson.model.Executor;
+import hudson.model.Item;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.Queue;
+import hudson.model.queue.CauseOfBlockage;
+import hudson.model.queue.QueueListener;
+import hudson.model.queue.QueueTaskDispatcher;
+import hudson.remoting.VirtualChannel;
+import io.jenkins.plugins.clever.api.Flavor;
+import jenkins.model.Jenkins;
+import jenkins.security.MasterToSlaveCallable;
+
+import javax.annotation.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pick the flavor of an agent from the resources used by previous builds of the job it is provisioned for, within the
+ * range allowed by its {@link AgentTemplate}, so light jobs don't wait for oversized agents and heavy jobs don't run
+ * on undersized ones.
+ * <p>
+ * When a build starts and completes, we sample the agent container cgroup for peak memory and CPU time, so builds on
+ * a reusable agent are only charged for what they used themselves, and maintain per job a decaying peak of memory and
+ * a moving average of CPU usage. A job we know nothing about gets the template default flavor.
+ * <p>
+ * Agents are provisioned for a specific queue item, and kept for it by {@link Dispatcher} while it waits in queue.
+ */
+public final class FlavorAdvisor {
+
+    private static final Logger LOGGER = Logger.getLogger(FlavorAdvisor.class.getName());
+
+    private static final FlavorAdvisor INSTANCE = new FlavorAdvisor();
+
+    /**
+     * Weight of the last sample in moving averages.
+     */
+    private static final double ALPHA = 0.2;
+
+    /**
+     * Memory margin over the peak we have measured for a job.
+     */
+    private static final double HEADROOM = 1.25;
+
+    /**
+     * Max average CPU utilization we accept for a flavor, above which a build is considered CPU bound.
+     */
+    private static final double CPU_BOUND = 0.85;
+
+    /**
+     * Peak memory above this ratio of a flavor memory means build was short on memory, possibly killed.
+     */
+    private static final double MEMORY_BOUND = 0.95;
+
+    private static final long SAMPLE_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
+    private final ConcurrentMap<String, JobHistory> history = new ConcurrentHashMap<>();
+
+    /**
+     * Queue items we have planned an agent for.
+     */
+    private final ConcurrentMap<Long, Boolean> planned = new ConcurrentHashMap<>();
+
+    /**
+     * Usage sampled on agent when the build running on an executor started.
+     */
+    private final ConcurrentMap<Executor, Baseline> baselines = new ConcurrentHashMap<>();
+
+    static FlavorAdvisor get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Oldest buildable item for this label we haven't planned an agent for yet.
+     */
+    @CheckForNull
+    Queue.BuildableItem plan(Label label) {
+        final List<Queue.BuildableItem> items = new ArrayList<>(Jenkins.getInstance().getQueue().getBuildableItems());
+        items.sort(Comparator.comparingLong(Queue.Item::getInQueueSince));
+        for (Queue.BuildableItem item : items) {
+            if (!label.equals(item.getAssignedLabel())) continue;
+            if (planned.putIfAbsent(item.getId(), Boolean.TRUE) == null) return item;
+        }
+        return null;
+    }
+
+    /**
+     * Agent planned for this item could not be provisioned, so another one can be.
+     */
+    void unplan(long itemId) {
+        planned.remove(itemId);
+    }
+
+    /**
+     * Flavor to provision an agent with for this queue item.
+     */
+    String flavor(CleverCloud cloud, AgentTemplate template, @CheckForNull Queue.Item item) {
+        final String fallback = template.getScaler();
+        if (item == null || !template.isRightSized()) return fallback;
+        final JobHistory h = history.get(key(item.task));
+        if (h == null) return fallback;
+        try {
+            final List<Flavor> range = range(cloud.getCredentialsId(), template);
+            if (range.isEmpty()) return fallback;
+            final String flavor = h.pick(range);
+            LOGGER.log(Level.FINE, "Selected flavor {0} for {1} ({2})", new Object[]{flavor, key(item.task), h});
+            return flavor;
+        } catch (ApiException e) {
+            LOGGER.log(Level.FINE, "Failed to retrieve flavors, using default for " + template.getDisplayName(), e);
+            return fallback;
+        }
+    }
+
+    /**
+     * Flavors allowed by template, smallest first.
+     */
+    private static List<Flavor> range(String credentialsId, AgentTemplate template) throws ApiException {
+        final List<Flavor> flavors = new ArrayList<>(Catalog.of(credentialsId).getFlavors("docker"));
+        flavors.sort(Comparator.comparingInt((Flavor f) -> f.getMem()).thenComparingInt(Flavor::getCpus));
+        int min = -1, max = -1;
+        for (int i = 0; i < flavors.size(); i++) {
+            final String name = flavors.get(i).getName();
+            if (name.equals(template.getMinScaler())) min = i;
+            if (name.equals(template.getMaxScaler())) max = i;
+        }
+        if (min < 0 || max < min) return new ArrayList<>();
+        return flavors.subList(min, max + 1);
+    }
+
+    /**
+     * Sample resources used on agent so far, before the build which just got accepted starts.
+     */
+    void started(Executor executor) {
+        final Computer owner = executor.getOwner();
+        if (!(owner instanceof CleverComputer)) return;
+        final CleverComputer c = (CleverComputer) owner;
+        final CleverAgent agent = c.getNode();
+        final VirtualChannel channel = c.getChannel();
+        if (agent == null || agent.getFlavor() == null || channel == null) return;
+
+        final CleverCloud cloud = AgentRegistry.get().getCloud(agent.getCloudName());
+        final AgentTemplate template = cloud != null ? cloud.getTemplate(agent.getTemplate()) : null;
+        if (template == null || !template.isRightSized()) return;
+
+        try {
+            baselines.put(executor, new Baseline(System.currentTimeMillis(), channel.callAsync(new Usage())));
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to sample resources used on " + c.getName(), e);
+        }
+    }
+
+    /**
+     * Sample resources used on agent for the build which just completed. Called from build executor before agent
+     * might be terminated, so we only send the request to agent from there, and process the response in background.
+     */
+    void completed(Executor executor, Queue.Task task, long duration) {
+        final Baseline baseline = baselines.remove(executor);
+        if (baseline == null) return;
+        final Computer owner = executor.getOwner();
+        if (!(owner instanceof CleverComputer)) return;
+        final CleverComputer c = (CleverComputer) owner;
+        final CleverAgent agent = c.getNode();
+        final VirtualChannel channel = c.getChannel();
+        if (agent == null || agent.getFlavor() == null || channel == null) return;
+
+        final CleverCloud cloud = AgentRegistry.get().getCloud(agent.getCloudName());
+        final AgentTemplate template = cloud != null ? cloud.getTemplate(agent.getTemplate()) : null;
+        if (template == null || !template.isRightSized()) return;
+
+        final long elapsed = System.currentTimeMillis() - baseline.time;
+        final String key = key(task);
+        final Future<long[]> sample;
+        try {
+            // request is queued on channel before agent gets terminated
+            sample = channel.callAsync(new Usage());
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to sample resources used on " + c.getName(), e);
+            return;
+        }
+
+        Computer.threadPoolForRemoting.submit(() -> {
+            try {
+                Flavor flavor = null;
+                for (Flavor f : Catalog.of(cloud.getCredentialsId()).getCachedFlavors("docker")) {
+                    if (f.getName().equals(agent.getFlavor())) flavor = f;
+                }
+                if (flavor == null) return;
+
+                final long[] before = baseline.usage.get(SAMPLE_TIMEOUT, TimeUnit.MILLISECONDS);
+                final long[] after = sample.get(SAMPLE_TIMEOUT, TimeUnit.MILLISECONDS);
+                if (before[0] < 0 || before[1] < 0 || after[0] < 0 || after[1] < 0 || elapsed <= 0) return;
+
+                history.computeIfAbsent(key, k -> new JobHistory()).record(new BuildUsage(before, after, elapsed, flavor), duration);
+            } catch (ApiException | ExecutionException | TimeoutException e) {
+                LOGGER.log(Level.FINE, "Failed to sample resources used on " + c.getName(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /**
+     * Builds of a pipeline run on placeholder tasks, which we attribute to the job.
+     */
+    private static String key(Queue.Task task) {
+        final Queue.Task owner = task.getOwnerTask();
+        return owner instanceof Item ? ((Item) owner).getFullName() : owner.getFullDisplayName();
+    }
+
+    /**
+     * Usage sampled on agent when a build started.
+     */
+    private static final class Baseline {
+        private final long time;
+        private final Future<long[]> usage;
+
+        Baseline(long time, Future<long[]> usage) {
+            this.time = time;
+            this.usage = usage;
+        }
+    }
+
+    /**
+     * Resources used by a single build, from agent container usage sampled when it started and completed.
+     */
+    /* package */ static final class BuildUsage {
+        /** MB */
+        private final double memory;
+        /** {@link #memory} is the build own peak, otherwise only an upper bound of it */
+        private final boolean peak;
+        /** average number of cores used */
+        private final double cpu;
+
+        /**
+         * @param before peak memory (bytes) and CPU time (ns) of container when build started
+         * @param after same when build completed
+         * @param elapsed ms between both samples
+         * @param flavor agent runs with
+         */
+        BuildUsage(long[] before, long[] after, long elapsed, Flavor flavor) {
+            // cgroup only keeps the container peak, which a previous build on a reusable agent may have set
+            this.peak = after[0] > before[0];
+            double m = after[0] / (1024.0 * 1024.0);
+            if (peak && m >= MEMORY_BOUND * flavor.getMem()) {
+                // we can't tell how much it would have used given more, so ask for next size
+                m = flavor.getMem() * HEADROOM;
+            }
+            this.memory = m;
+            this.cpu = (after[1] - before[1]) / (elapsed * 1000000.0);
+        }
+
+        /* package */ double getMemory() {
+            return memory;
+        }
+
+        /* package */ boolean isPeak() {
+            return peak;
+        }
+
+        /* package */ double getCpu() {
+            return cpu;
+        }
+    }
+
+    /* package */ static final class JobHistory {
+        /** MB */
+        private double memory;
+        /** average number of cores used */
+        private double cpu;
+        /** ms */
+        private double duration;
+        private int samples;
+
+        synchronized void record(BuildUsage u, long d) {
+            final double m = u.memory;
+            if (u.peak) {
+                // memory need is a peak, so grow immediately but only shrink slowly
+                memory = samples == 0 ? m : Math.max(m, (1 - ALPHA) * memory + ALPHA * m);
+            } else {
+                // build stayed below a peak set before it, maybe by another job, so this can only lower our estimate
+                memory = samples == 0 ? m : Math.min(memory, Math.max(m, (1 - ALPHA) * memory + ALPHA * m));
+            }
+            cpu = samples == 0 ? u.cpu : (1 - ALPHA) * cpu + ALPHA * u.cpu;
+            duration = samples == 0 ? d : (1 - ALPHA) * duration + ALPHA * d;
+            samples++;
+        }
+
+        /**
+         * Smallest flavor with enough memory and CPU for this job, largest one if none does.
+         */
+        synchronized String pick(List<Flavor> range) {
+            for (Flavor f : range) {
+                if (f.getMem() >= memory * HEADROOM && f.getCpus() * CPU_BOUND >= cpu) return f.getName();
+            }
+            return range.get(range.size() - 1).getName();
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("memory=%dMB, cpu=%.2f, build duration=%ds, samples=%d",
+                    (long) memory, cpu, (long) duration / 1000, samples);
+        }
+    }
+
+    /**
+     * Read container peak memory (bytes) and CPU time (ns) from cgroup, v1 or v2, <code>-1</code> when not available.
+     */
+    private static final class Usage extends MasterToSlaveCallable<long[], IOException> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public long[] call() throws IOException {
+            long memory = read("/sys/fs/cgroup/memory.peak");
+            if (memory < 0) memory = read("/sys/fs/cgroup/memory/memory.max_usage_in_bytes");
+            long cpu = -1;
+            final File stat = new File("/sys/fs/cgroup/cpu.stat");
+            if (stat.exists()) {
+                for (String line : Files.readAllLines(stat.toPath(), StandardCharsets.UTF_8)) {
+                    if (line.startsWith("usage_usec ")) cpu = Long.parseLong(line.substring(11).trim()) * 1000;
+                }
+            }
+            if (cpu < 0) cpu = read("/sys/fs/cgroup/cpuacct/cpuacct.usage");
+            if (cpu < 0) cpu = read("/sys/fs/cgroup/cpu,cpuacct/cpuacct.usage");
+            return new long[]{memory, cpu};
+        }
+
+        private static long read(String path) throws IOException {
+            final File f = new File(path);
+            if (!f.exists()) return -1;
+            try {
+                return Long.parseLong(new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8).trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Keep an agent for the queue item it has been sized for, as long as this one is waiting in queue.
+     */
+    @Extension
+    public static class Dispatcher extends QueueTaskDispatcher {
+
+        @Override
+        public CauseOfBlockage canTake(Node node, Queue.BuildableItem item) {
+            if (!(node instanceof CleverAgent)) return null;
+            final long reserved = ((CleverAgent) node).getReservedFor();
+            if (reserved == 0 || reserved == item.getId()) return null;
+            if (Jenkins.getInstance().getQueue().getItem(reserved) == null) return null;
+            return new CauseOfBlockage() {
+                @Override
+                public String getShortDescription() {
+                    return node.getNodeName() + " is reserved for another build";
+                }
+            };
+        }
+    }
+
+    @Extension
+    public static class QueueItems extends QueueListener {
+
+        @Override
+        public void onLeft(Queue.LeftItem li) {
+            get().unplan(li.getId());
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package io.jenkins.plugins.clever;
+
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.PeriodicWork;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Don't leave Clever Cloud applications running (and billed) once Jenkins won't use them.
+ * <p>
+ * On quiet-down, idle agents are stopped right away, and busy ones as soon as they complete their build. Agents still
+ * being provisioned are left to connect, then stopped once idle, so we don't delete an application in the middle of
+ * its deployment. On shutdown, we wait for busy agents up to a deadline, then delete all remaining applications in
+ * parallel. Deletions which fail are left as {@link AgentRegistry.State#TERMINATING} in registry, so
+ * {@link TerminationQueue} resumes them on next startup.
+ */
+public final class FleetDrain {
+
+    private static final Logger LOGGER = Logger.getLogger(FleetDrain.class.getName());
+
+    private static final long SHUTDOWN_TIMEOUT = TimeUnit.SECONDS.toMillis(
+            Integer.getInteger(FleetDrain.class.getName() + ".shutdownTimeoutSeconds", 60));
+
+    private static final int CONCURRENCY = Integer.getInteger(FleetDrain.class.getName() + ".concurrency", 8);
+
+    /**
+     * Time we give deletions to complete once deadline for busy agents is over.
+     */
+    private static final long DELETE_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * Shutdown drain has run for current Jenkins instance.
+     */
+    private static final AtomicBoolean DRAINED = new AtomicBoolean();
+
+    private FleetDrain() {
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void init() {
+        DRAINED.set(false);
+    }
+
+    @Terminator
+    public static void shutdown() {
+        if (!DRAINED.compareAndSet(false, true)) return;
+        final long start = System.currentTimeMillis();
+        final long deadline = start + SHUTDOWN_TIMEOUT;
+
+        int idle = 0;
+        final List<Computer> busy = new ArrayList<>();
+        for (Node node : Jenkins.getInstance().getNodes()) {
+            if (!(node instanceof CleverAgent)) continue;
+            final Computer c = node.toComputer();
+            if (c == null) continue;
+            c.setAcceptingTasks(false);
+            if (c.isIdle()) {
+                idle++;
+            } else {
+                busy.add(c);
+            }
+        }
+
+        final int waited = busy.size();
+        try {
+            while (!busy.isEmpty() && System.currentTimeMillis() < deadline) {
+                busy.removeIf(Computer::isIdle);
+                if (!busy.isEmpty()) Thread.sleep(1000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // registry also has applications which were already being terminated
+        final AgentRegistry registry = AgentRegistry.get();
+        final List<AgentRegistry.Entry> entries = new ArrayList<>(registry.getEntries());
+        final AtomicInteger deleted = new AtomicInteger();
+        final ExecutorService pool = Executors.newFixedThreadPool(CONCURRENCY,
+                new NamingThreadFactory(new DaemonThreadFactory(), "Clever Cloud fleet drain"));
+        for (AgentRegistry.Entry entry : entries) {
+            registry.setState(entry.getApplicationId(), AgentRegistry.State.TERMINATING);
+            pool.submit(() -> {
+                try {
+                    final CleverCloud cloud = registry.getCloud(entry.getCloud());
+                    if (cloud == null) throw new IOException("Cloud " + entry.getCloud() + " does not exist");
+                    cloud.terminate(entry);
+                    deleted.incrementAndGet();
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.log(Level.FINE, "Failed to delete application " + entry.getApplicationId(), e);
+                }
+            });
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(Math.max(DELETE_TIMEOUT, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pool.shutdownNow();
+
+        try {
+            registry.save();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save Clever Cloud agents registry", e);
+        }
+
+        LOGGER.log(Level.INFO, String.format("Drained Clever Cloud agents in %ds: %d idle, %d/%d busy completed before deadline, "
+                        + "%d/%d applications deleted, %d left for next startup",
+                TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - start), idle, waited - busy.size(), waited,
+                deleted.get(), entries.size(), entries.size() - deleted.get()));
+    }
+
+    /**
+     * Stop idle agents while Jenkins is quieting down. Busy ones will be stopped once idle on a subsequent run, and
+     * ones being provisioned once connected and idle.
+     */
+    @Extension
+    public static class QuietDown extends PeriodicWork {
+
+        private final AtomicBoolean quietingDown = new AtomicBoolean();
+
+        /**
+         * Applications of agents we are stopping, so a subsequent run doesn't stop them again.
+         */
+        private final Set<String> stopping = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.SECONDS.toMillis(10);
+        }
+
+        @Override
+        protected void doRun() {
+            final Jenkins j = Jenkins.getInstance();
+            if (!j.isQuietingDown()) {
+                quietingDown.set(false);
+                return;
+            }
+
+            final AgentRegistry registry = AgentRegistry.get();
+            int stopped = 0, busy = 0, provisioning = 0;
+            for (Node node : j.getNodes()) {
+                if (!(node instanceof CleverAgent)) continue;
+                final CleverAgent agent = (CleverAgent) node;
+                final Computer c = node.toComputer();
+                if (c == null) continue;
+                final AgentRegistry.Entry entry = registry.get(agent.getApplicationId());
+                if (entry != null && entry.getState() == AgentRegistry.State.PROVISIONING) {
+                    // an offline computer looks idle, but application is being deployed
+                    provisioning++;
+                    continue;
+                }
+                if (!c.isIdle()) {
+                    busy++;
+                    continue;
+                }
+                if (!stopping.add(agent.getApplicationId())) continue;
+                c.setAcceptingTasks(false);
+                Computer.threadPoolForRemoting.submit(() -> {
+                    try {
+                        // only schedules application deletion, see TerminationQueue
+                        agent.terminate();
+                    } catch (InterruptedException | IOException e) {
+                        LOGGER.log(Level.WARNING, "Failed to terminate agent " + agent.getNodeName(), e);
+                    } finally {
+                        stopping.remove(agent.getApplicationId());
+                    }
+                });
+                stopped++;
+            }
+
+            if (quietingDown.compareAndSet(false, true)) {
+                LOGGER.log(Level.INFO, "Jenkins is quieting down, stopped {0} idle Clever Cloud agents, {1} busy agents "
+                        + "will be stopped once done, {2} being provisioned once connected", new Object[]{stopped, busy, provisioning});
+            } else if (stopped > 0) {
+                LOGGER.log(Level.FINE, "Stopped {0} Clever Cloud agents, {1} still busy, {2} being provisioned",
+                        new Object[]{stopped, busy, provisioning});
+            }
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package io.jenkins.plugins.clever;
+
+import hudson.remoting.Channel;
+import hudson.remoting.VirtualChannel;
+import jenkins.security.MasterToSlaveCallable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tiny HTTP responder running on agent, so Clever Cloud detects a successful deployment (as there's no other option
+ * (yet) to detect one) and can tell agent state.
+ * <p>
+ * <code>GET /</code> answers <code>200</code> as long as the remoting channel is up, <code>GET /ready</code> only
+ * while executor is idle, <code>503</code> otherwise. Both report channel, executor state and system load as JSON.
+ * <p>
+ * A single thread serves all requests with non-blocking IO, and the responder stops with the remoting channel, so
+ * nothing is left listening on a disconnected agent. When agent reconnects, the new channel takes the running responder
+ * over, so closing the previous one doesn't stop it.
+ */
+final class HealthResponder implements Runnable {
+
+    private static final Logger LOGGER = Logger.getLogger(HealthResponder.class.getName());
+
+    private static final int DEFAULT_PORT = 8080;
+
+    /**
+     * Responder running in this agent JVM, if any.
+     */
+    private static HealthResponder instance;
+
+    /**
+     * Last responder stopped, which may still be releasing its port.
+     */
+    private static HealthResponder stopping;
+
+    private final Selector selector;
+
+    private final ServerSocketChannel server;
+
+    private volatile boolean connected = true;
+
+    private volatile boolean busy;
+
+    private Thread thread;
+
+    /**
+     * Remoting channel responder reports state of, guarded by class lock.
+     */
+    private Object owner;
+
+    private HealthResponder(int port) throws IOException {
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        try {
+            server.socket().setReuseAddress(true);
+            server.bind(new InetSocketAddress("0.0.0.0", port));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Start responder on agent, from controller. Agent is reported idle.
+     */
+    static void start(VirtualChannel channel) throws IOException, InterruptedException {
+        channel.call(new Start());
+    }
+
+    /**
+     * Report executor state to agent's responder. Doesn't wait for agent to acknowledge.
+     */
+    static void busy(VirtualChannel channel, boolean busy) {
+        try {
+            channel.callAsync(new Busy(busy));
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to report agent state", e);
+        }
+    }
+
+    /**
+     * Responder running in this agent JVM, started if needed.
+     * @param port to listen on, <code>0</code> for any free port
+     * @param owner channel responder will report state of, until it's closed or another one takes it over
+     */
+    /* package */ static synchronized HealthResponder getOrStart(int port, Object owner) throws IOException {
+        if (instance != null && !instance.connected) {
+            // failed, and about to exit
+            stopping = instance;
+            instance = null;
+        }
+        if (instance == null) {
+            if (stopping != null) {
+                // wait for previous responder to release port
+                try {
+                    stopping.thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for health responder to stop");
+                }
+                stopping = null;
+            }
+            final HealthResponder responder = new HealthResponder(port);
+            responder.thread = new Thread(responder, "Clever Cloud health responder");
+            responder.thread.setDaemon(true);
+            responder.thread.start();
+            instance = responder;
+        }
+        instance.owner = owner;
+        return instance;
+    }
+
+    /**
+     * Channel has been closed, stop responder unless another channel has taken it over since.
+     */
+    /* package */ static synchronized void closed(Object owner) {
+        if (instance != null && instance.owner == owner) instance.stop();
+    }
+
+    /* package */ static synchronized void setBusy(boolean busy) {
+        if (instance != null) instance.busy = busy;
+    }
+
+    /**
+     * Port responder listens on.
+     */
+    /* package */ int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Stop responder. A new one can be started right away, which will wait for this one to release its port.
+     */
+    /* package */ void stop() {
+        synchronized (HealthResponder.class) {
+            connected = false;
+            if (instance == this) {
+                instance = null;
+                stopping = this;
+            }
+        }
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (connected) {
+                selector.select();
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else if (key.isReadable()) {
+                            read(key);
+                        }
+                    } catch (IOException e) {
+                        key.cancel();
+                        key.channel().close();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Health responder failed", e);
+        } finally {
+            // next getOrStart() will replace this responder, once it has released its port
+            connected = false;
+            try {
+                for (SelectionKey key : selector.keys()) key.channel().close();
+                selector.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to close health responder", e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        final SocketChannel client = server.accept();
+        if (client == null) return;
+        client.configureBlocking(false);
+        client.register(selector, SelectionKey.OP_READ, ByteBuffer.allocate(1024));
+    }
+
+    /**
+     * We only need the request line, so answer as soon as we got it.
+     */
+    private void read(SelectionKey key) throws IOException {
+        final SocketChannel client = (SocketChannel) key.channel();
+        final ByteBuffer request = (ByteBuffer) key.attachment();
+        final int read = client.read(request);
+        final String received = new String(request.array(), 0, request.position(), StandardCharsets.US_ASCII);
+        final int eol = received.indexOf("\r\n");
+        if (eol < 0 && read >= 0 && request.hasRemaining()) return;
+
+        final String[] line = (eol < 0 ? received : received.substring(0, eol)).split(" ");
+        final boolean readiness = line.length > 1 && line[1].startsWith("/ready");
+        final boolean ok = connected && !(readiness && busy);
+        final String body = String.format(Locale.ROOT, "{\"channel\":\"%s\",\"executor\":\"%s\",\"load\":%.2f}\n",
+                connected ? "up" : "down", busy ? "busy" : "idle",
+                ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage());
+        final byte[] bytes = body.getBytes(StandardCharsets.US_ASCII);
+        final String headers = (ok ? "HTTP/1.1 200 OK" : "HTTP/1.1 503 Service Unavailable") + "\r\n"
+                + "Content-Type: application/json\r\n"
+                + "Content-Length: " + bytes.length + "\r\n"
+                + "Connection: close\r\n\r\n";
+
+        // response is much smaller than socket buffer, so a single write never blocks
+        final ByteBuffer response = ByteBuffer.allocate(headers.length() + bytes.length);
+        response.put(headers.getBytes(StandardCharsets.US_ASCII)).put(bytes).flip();
+        client.write(response);
+        key.cancel();
+        client.close();
+    }
+
+    private static final class Start extends MasterToSlaveCallable<Void, IOException> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Void call() throws IOException {
+            final Channel channel = Channel.current();
+            final String port = System.getenv("PORT");
+            getOrStart(port != null ? Integer.parseInt(port) : DEFAULT_PORT, channel).busy = false;
+            if (channel != null) {
+                channel.addListener(new Channel.Listener() {
+                    @Override
+                    public void onClosed(Channel channel, IOException cause) {
+                        closed(channel);
+                    }
+                });
+            }
+            return null;
+        }
+    }
+
+    private static final class Busy extends MasterToSlaveCallable<Void, IOException> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final boolean busy;
+
+        Busy(boolean busy) {
+            this.busy = busy;
+        }
+
+        @Override
+        public Void call() {
+            setBusy(busy);
+            return null;
+        }
+    }
+}
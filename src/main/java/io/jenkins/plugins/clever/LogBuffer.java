@@ -0,0 +1,55 @@
+package io.jenkins.plugins.clever;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Bounded buffer for the last lines of a log. Once full, oldest lines are dropped, so memory used by a buffer never
+ * exceeds its capacity, whatever the log producer throughput.
+ */
+final class LogBuffer {
+
+    private static final int MAX_LINE = 1024;
+
+    private final int capacity;
+
+    private final Deque<String> lines = new ArrayDeque<>();
+
+    /* guarded by this */
+    private int size;
+
+    /* guarded by this */
+    private long dropped;
+
+    /**
+     * @param capacity max number of characters kept in buffer.
+     */
+    LogBuffer(int capacity) {
+        this.capacity = capacity;
+    }
+
+    synchronized void append(String line) {
+        if (line.length() > MAX_LINE) {
+            line = line.substring(0, MAX_LINE) + "…";
+        }
+        lines.addLast(line);
+        size += line.length();
+        while (size > capacity && !lines.isEmpty()) {
+            size -= lines.removeFirst().length();
+            dropped++;
+        }
+    }
+
+    synchronized List<String> getLines() {
+        return new ArrayList<>(lines);
+    }
+
+    /**
+     * Number of lines dropped so far as buffer was full.
+     */
+    synchronized long getDropped() {
+        return dropped;
+    }
+}
@@ -4,6 +4,7 @@ import hudson.model.Computer;
 import hudson.model.Executor;
 import hudson.model.ExecutorListener;
 import hudson.model.Queue;
+import hudson.remoting.VirtualChannel;
 import hudson.slaves.CloudSlaveRetentionStrategy;
 
 import java.io.IOException;
@@ -21,20 +22,58 @@ public class OneShotRetentionStrategy extends CloudSlaveRetentionStrategy implem
 
     @Override
     public void taskAccepted(Executor executor, Queue.Task task) {
-        // noop
+        final Computer owner = executor.getOwner();
+        if (!(owner instanceof CleverComputer)) return;
+
+        final VirtualChannel channel = owner.getChannel();
+        if (channel != null) HealthResponder.busy(channel, true);
+
+        final CleverAgent node = ((CleverComputer) owner).getNode();
+        if (node != null) ProvisioningTraces.get().firstBuild(node.getNodeName());
+        if (node != null) StandbyPool.get().take(node);
+        FlavorAdvisor.get().started(executor);
+    }
+
+    @Override
+    protected boolean isIdleForTooLong(Computer c) {
+        if (c instanceof CleverComputer) {
+            // Standby agents are expected to stay idle until some build need them
+            final CleverAgent node = ((CleverComputer) c).getNode();
+            if (node != null && node.isStandby()) return false;
+        }
+        return super.isIdleForTooLong(c);
     }
 
     @Override
     public void taskCompleted(Executor executor, Queue.Task task, long durationMS) {
-        done(executor);
+        onCompleted(executor, task, durationMS);
     }
 
     @Override
     public void taskCompletedWithProblems(Executor executor, Queue.Task task, long durationMS, Throwable problems) {
+        onCompleted(executor, task, durationMS);
+    }
+
+    /**
+     * Build completed, successfully or not.
+     */
+    protected void onCompleted(Executor executor, Queue.Task task, long durationMS) {
+        DemandForecast.get().completed(task.getAssignedLabel(), durationMS);
+        FlavorAdvisor.get().completed(executor, task, durationMS);
+        completed(executor);
+    }
+
+    /**
+     * What to do with agent once its build completed. One-shot agents are terminated.
+     */
+    protected void completed(Executor executor) {
         done(executor);
     }
 
-    private void done(Executor executor) {
+    /**
+     * Build is done, terminate agent.
+     */
+    /* package */ void done(Executor executor) {
         final Computer owner = executor.getOwner();
         if (!(owner instanceof CleverComputer)) return;
 
@@ -49,17 +88,15 @@ public class OneShotRetentionStrategy extends CloudSlaveRetentionStrategy implem
         LOGGER.log(Level.FINE, "terminating {0} since {1} seems to be finished", new Object[]{c.getName(), exec});
         c.setAcceptingTasks(false); // just in case
         Computer.threadPoolForRemoting.submit(() -> {
-            Queue.withLock( () -> {
-                CleverAgent node = c.getNode();
-                if (node != null) {
-                    try {
-                        node.terminate();
-                    } catch (InterruptedException | IOException e) {
-                        LOGGER.log(Level.WARNING, "Failed to terminate agent "+node.getNodeName(), e);
-                    }
-
+            CleverAgent node = c.getNode();
+            if (node != null) {
+                try {
+                    // only schedules application deletion, see TerminationQueue
+                    node.terminate();
+                } catch (InterruptedException | IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to terminate agent "+node.getNodeName(), e);
                 }
-            });
+            }
         });
     }
 }
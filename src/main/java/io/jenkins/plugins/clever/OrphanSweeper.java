@@ -0,0 +1,124 @@
+package io.jenkins.plugins.clever;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import hudson.slaves.Cloud;
+import io.jenkins.plugins.clever.api.Application;
+import jenkins.model.Jenkins;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Delete Clever Cloud applications created by this controller which don't have a matching {@link CleverAgent}
+ * anymore, typically as Jenkins restarted while an agent was being provisioned or application deletion failed.
+ * Also deletes cache buckets evicted by {@link CacheVolumes}.
+ */
+@Extension
+public class OrphanSweeper extends AsyncPeriodicWork {
+
+    private static final Logger LOGGER = Logger.getLogger(OrphanSweeper.class.getName());
+
+    private static final long PERIOD = TimeUnit.MINUTES.toMillis(Integer.getInteger(OrphanSweeper.class.getName() + ".periodMinutes", 15));
+
+    /**
+     * Application is created before we register the agent, so leave some time for provisioning to complete.
+     */
+    /* package */ static long gracePeriod = TimeUnit.MINUTES.toMillis(10);
+
+    private static final int BATCH_SIZE = 10;
+
+    /**
+     * When we first listed applications which have no creation date, indexed by cloud then application ID, so they
+     * still get a grace period.
+     */
+    private final ConcurrentMap<String, Map<String, Long>> firstSeen = new ConcurrentHashMap<>();
+
+    public OrphanSweeper() {
+        super("Clever Cloud orphan applications sweeper");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return PERIOD;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        for (Cloud cloud : Jenkins.getInstance().clouds) {
+            if (!(cloud instanceof CleverCloud)) continue;
+            try {
+                sweep((CleverCloud) cloud, listener);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to sweep orphan applications for cloud " + cloud.name, e);
+            }
+            try {
+                CacheVolumes.of((CleverCloud) cloud).sweep((CleverCloud) cloud, listener);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to sweep cache buckets for cloud " + cloud.name, e);
+            }
+        }
+    }
+
+    /* package */ void sweep(CleverCloud cloud, TaskListener listener) throws Exception {
+        final Set<String> live = new HashSet<>();
+        for (AgentRegistry.Entry e : AgentRegistry.get().getEntries(cloud.name)) {
+            if (e.isLive()) live.add(e.getApplicationId());
+        }
+
+        final long now = System.currentTimeMillis();
+        final Map<String, Long> seen = firstSeen.computeIfAbsent(cloud.name, c -> new ConcurrentHashMap<>());
+        final Set<String> listed = new HashSet<>();
+        final List<String> orphans = new ArrayList<>();
+        for (Application application : cloud.listApplications()) {
+            listed.add(application.getId());
+            if (live.contains(application.getId())) continue;
+            Long created = application.getCreationDate();
+            if (created == null) created = seen.computeIfAbsent(application.getId(), id -> now);
+            if (now - created < gracePeriod) continue;
+            orphans.add(application.getId());
+        }
+        seen.keySet().retainAll(listed);
+        if (orphans.isEmpty()) return;
+
+        final List<String> reclaimed = new ArrayList<>();
+        for (int i = 0; i < orphans.size(); i += BATCH_SIZE) {
+            final List<String> batch = orphans.subList(i, Math.min(orphans.size(), i + BATCH_SIZE));
+            final List<CompletableFuture<String>> deletions = new ArrayList<>();
+            for (String id : batch) {
+                deletions.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        cloud.deleteApplication(id);
+                        return id;
+                    } catch (IOException e) {
+                        LOGGER.log(Level.WARNING, "Failed to delete orphan application " + id, e);
+                        return null;
+                    }
+                }, Computer.threadPoolForRemoting));
+            }
+            for (CompletableFuture<String> deletion : deletions) {
+                final String id = deletion.join();
+                if (id != null) reclaimed.add(id);
+            }
+        }
+
+        final String summary = String.format("Reclaimed %d/%d orphan applications for cloud %s: %s",
+                reclaimed.size(), orphans.size(), cloud.name, reclaimed);
+        listener.getLogger().println(summary);
+        LOGGER.log(Level.INFO, summary);
+    }
+}
@@ -0,0 +1,341 @@
+package io.jenkins.plugins.clever;
+
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.RootAction;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Latency histograms and failure counters for each phase of agents provisioning, per template and zone,
+ * {@link ProvisioningQueue} depth and wait time per cloud, and {@link StandbyPool} hits and misses per template.
+ * Exposed through JMX and as Prometheus text format on <code>/clever-cloud-metrics/</code>.
+ */
+public final class ProvisioningMetrics implements ProvisioningMetricsMXBean {
+
+    private static final Logger LOGGER = Logger.getLogger(ProvisioningMetrics.class.getName());
+
+    private static final ProvisioningMetrics INSTANCE = new ProvisioningMetrics();
+
+    /** Histogram buckets upper bounds, in milliseconds. */
+    private static final long[] BUCKETS = {100, 500, 1000, 2500, 5000, 10000, 30000, 60000, 120000, 300000, 600000};
+
+    /** Provisioning phases. */
+    static final String CREATE_APPLICATION = "create_application";
+    static final String LINK_CACHES = "link_caches";
+    static final String SET_ENV = "set_env";
+    static final String GIT_PUSH = "git_push";
+    static final String PROVISION = "provision";
+    static final String DEPLOY = "deploy";
+    static final String CONNECT = "connect";
+    static final String TERMINATE = "terminate";
+
+    private final ConcurrentMap<Key, Histogram> histograms = new ConcurrentHashMap<>();
+
+    static ProvisioningMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Record duration for a provisioning phase.
+     * @param start as returned by {@link System#currentTimeMillis()} when phase started
+     */
+    void record(String phase, String template, String zone, long start, boolean success) {
+        final long duration = System.currentTimeMillis() - start;
+        histograms.computeIfAbsent(new Key(phase, template, zone), k -> new Histogram()).record(duration, success);
+    }
+
+    /**
+     * Run a provisioning phase and record its duration.
+     */
+    <T> T time(String phase, String template, String zone, Retry.Call<T> call) throws Exception {
+        final long start = System.currentTimeMillis();
+        boolean success = false;
+        try {
+            final T t = call.call();
+            success = true;
+            return t;
+        } finally {
+            record(phase, template, zone, start, success);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        return collect(h -> h.count.sum());
+    }
+
+    @Override
+    public Map<String, Long> getFailures() {
+        return collect(h -> h.failures.sum());
+    }
+
+    @Override
+    public Map<String, Double> getMeanMillis() {
+        return collect(h -> {
+            final long n = h.count.sum();
+            return n == 0 ? 0d : (double) h.sum.sum() / n;
+        });
+    }
+
+    @Override
+    public Map<String, Double> getP95Millis() {
+        return collect(h -> h.percentile(0.95));
+    }
+
+    @Override
+    public Map<String, Integer> getQueueDepth() {
+        return collectQueues(ProvisioningQueue::getQueueDepth);
+    }
+
+    @Override
+    public Map<String, Integer> getQueueActive() {
+        return collectQueues(ProvisioningQueue::getActive);
+    }
+
+    @Override
+    public Map<String, Long> getQueueAverageWaitMillis() {
+        return collectQueues(q -> q.getStatistics().getAverageWait());
+    }
+
+    @Override
+    public Map<String, Long> getQueueMaxWaitMillis() {
+        return collectQueues(q -> q.getStatistics().getMaxWait());
+    }
+
+    @Override
+    public Map<String, Long> getStandbyHits() {
+        return collectStandby(StandbyPool.Statistics::getHits);
+    }
+
+    @Override
+    public Map<String, Long> getStandbyMisses() {
+        return collectStandby(StandbyPool.Statistics::getMisses);
+    }
+
+    private static <T> Map<String, T> collectStandby(Function<StandbyPool.Statistics, T> f) {
+        final Map<String, T> m = new TreeMap<>();
+        for (Map.Entry<String, StandbyPool.Statistics> e : standby().entrySet()) {
+            m.put(e.getKey(), f.apply(e.getValue()));
+        }
+        return m;
+    }
+
+    /**
+     * MBean can be queried before Jenkins has started or after it has shut down.
+     */
+    private static Map<String, StandbyPool.Statistics> standby() {
+        return Jenkins.getInstanceOrNull() == null ? Collections.emptyMap() : StandbyPool.get().getStatistics();
+    }
+
+    private static <T> Map<String, T> collectQueues(Function<ProvisioningQueue, T> f) {
+        final Map<String, T> m = new TreeMap<>();
+        for (Map.Entry<String, ProvisioningQueue> e : ProvisioningQueue.all().entrySet()) {
+            m.put(e.getKey(), f.apply(e.getValue()));
+        }
+        return m;
+    }
+
+    private <T> Map<String, T> collect(Function<Histogram, T> f) {
+        final Map<String, T> m = new TreeMap<>();
+        for (Map.Entry<Key, Histogram> e : histograms.entrySet()) {
+            m.put(e.getKey().toString(), f.apply(e.getValue()));
+        }
+        return m;
+    }
+
+    /**
+     * Write metrics using Prometheus text exposition format.
+     */
+    void writePrometheus(PrintWriter w) {
+        w.println("# HELP clever_cloud_phase_duration_seconds Duration of Clever Cloud agents provisioning phases.");
+        w.println("# TYPE clever_cloud_phase_duration_seconds histogram");
+        for (Map.Entry<Key, Histogram> e : histograms.entrySet()) {
+            final String labels = e.getKey().labels();
+            final Histogram h = e.getValue();
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulative += h.buckets[i].sum();
+                w.printf(Locale.ROOT, "clever_cloud_phase_duration_seconds_bucket{%s,le=\"%s\"} %d%n", labels, seconds(BUCKETS[i]), cumulative);
+            }
+            w.printf(Locale.ROOT, "clever_cloud_phase_duration_seconds_bucket{%s,le=\"+Inf\"} %d%n", labels, h.count.sum());
+            w.printf(Locale.ROOT, "clever_cloud_phase_duration_seconds_sum{%s} %s%n", labels, seconds(h.sum.sum()));
+            w.printf(Locale.ROOT, "clever_cloud_phase_duration_seconds_count{%s} %d%n", labels, h.count.sum());
+        }
+        w.println("# HELP clever_cloud_phase_failures_total Failed Clever Cloud agents provisioning phases.");
+        w.println("# TYPE clever_cloud_phase_failures_total counter");
+        for (Map.Entry<Key, Histogram> e : histograms.entrySet()) {
+            w.printf(Locale.ROOT, "clever_cloud_phase_failures_total{%s} %d%n", e.getKey().labels(), e.getValue().failures.sum());
+        }
+
+        final Map<String, ProvisioningQueue> queues = ProvisioningQueue.all();
+        w.println("# HELP clever_cloud_provisioning_queue_depth Provisioning tasks waiting to run.");
+        w.println("# TYPE clever_cloud_provisioning_queue_depth gauge");
+        for (Map.Entry<String, ProvisioningQueue> e : queues.entrySet()) {
+            w.printf(Locale.ROOT, "clever_cloud_provisioning_queue_depth{cloud=\"%s\"} %d%n", Key.escape(e.getKey()), e.getValue().getQueueDepth());
+        }
+        w.println("# HELP clever_cloud_provisioning_queue_active Provisioning tasks running.");
+        w.println("# TYPE clever_cloud_provisioning_queue_active gauge");
+        for (Map.Entry<String, ProvisioningQueue> e : queues.entrySet()) {
+            w.printf(Locale.ROOT, "clever_cloud_provisioning_queue_active{cloud=\"%s\"} %d%n", Key.escape(e.getKey()), e.getValue().getActive());
+        }
+        w.println("# HELP clever_cloud_provisioning_queue_wait_seconds Time provisioning tasks waited in queue.");
+        w.println("# TYPE clever_cloud_provisioning_queue_wait_seconds summary");
+        for (Map.Entry<String, ProvisioningQueue> e : queues.entrySet()) {
+            final ProvisioningQueue.Statistics st = e.getValue().getStatistics();
+            final String cloud = Key.escape(e.getKey());
+            w.printf(Locale.ROOT, "clever_cloud_provisioning_queue_wait_seconds_sum{cloud=\"%s\"} %s%n", cloud, seconds(st.getTotalWait()));
+            w.printf(Locale.ROOT, "clever_cloud_provisioning_queue_wait_seconds_count{cloud=\"%s\"} %d%n", cloud, st.getStarted());
+        }
+        w.println("# HELP clever_cloud_provisioning_queue_max_wait_seconds Longest time a provisioning task waited in queue.");
+        w.println("# TYPE clever_cloud_provisioning_queue_max_wait_seconds gauge");
+        for (Map.Entry<String, ProvisioningQueue> e : queues.entrySet()) {
+            w.printf(Locale.ROOT, "clever_cloud_provisioning_queue_max_wait_seconds{cloud=\"%s\"} %s%n", Key.escape(e.getKey()), seconds(e.getValue().getStatistics().getMaxWait()));
+        }
+
+        final Collection<StandbyPool.Statistics> standby = standby().values();
+        w.println("# HELP clever_cloud_standby_hits_total Builds which started on a standby agent.");
+        w.println("# TYPE clever_cloud_standby_hits_total counter");
+        for (StandbyPool.Statistics st : standby) {
+            w.printf(Locale.ROOT, "clever_cloud_standby_hits_total{cloud=\"%s\",template=\"%s\"} %d%n", Key.escape(st.getCloud()), Key.escape(st.getTemplate()), st.getHits());
+        }
+        w.println("# HELP clever_cloud_standby_misses_total Builds which found the standby pool empty.");
+        w.println("# TYPE clever_cloud_standby_misses_total counter");
+        for (StandbyPool.Statistics st : standby) {
+            w.printf(Locale.ROOT, "clever_cloud_standby_misses_total{cloud=\"%s\",template=\"%s\"} %d%n", Key.escape(st.getCloud()), Key.escape(st.getTemplate()), st.getMisses());
+        }
+    }
+
+    private static String seconds(long ms) {
+        return Double.toString(ms / 1000d);
+    }
+
+    @Initializer(after = InitMilestone.PLUGINS_STARTED)
+    public static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE,
+                    new ObjectName("io.jenkins.plugins.clever:type=ProvisioningMetrics"));
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Failed to register Clever Cloud provisioning metrics MBean", e);
+        }
+    }
+
+    private static final class Histogram {
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        void record(long duration, boolean success) {
+            for (int i = 0; i < BUCKETS.length; i++) {
+                if (duration <= BUCKETS[i]) {
+                    buckets[i].increment();
+                    break;
+                }
+            }
+            count.increment();
+            sum.add(duration);
+            if (!success) failures.increment();
+        }
+
+        double percentile(double p) {
+            final long n = count.sum();
+            if (n == 0) return 0;
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulative += buckets[i].sum();
+                if (cumulative >= p * n) return BUCKETS[i];
+            }
+            return Double.POSITIVE_INFINITY;
+        }
+    }
+
+    private static final class Key {
+        private final String phase;
+        private final String template;
+        private final String zone;
+
+        Key(String phase, String template, String zone) {
+            this.phase = phase;
+            this.template = String.valueOf(template);
+            this.zone = String.valueOf(zone);
+        }
+
+        String labels() {
+            return "phase=\"" + escape(phase) + "\",template=\"" + escape(template) + "\",zone=\"" + escape(zone) + "\"";
+        }
+
+        private static String escape(String s) {
+            return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key k = (Key) o;
+            return phase.equals(k.phase) && template.equals(k.template) && zone.equals(k.zone);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(phase, template, zone);
+        }
+
+        @Override
+        public String toString() {
+            return phase + "{template=" + template + ",zone=" + zone + "}";
+        }
+    }
+
+    @Extension
+    public static class Endpoint implements RootAction {
+
+        @Override
+        public String getIconFileName() {
+            return null;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Clever Cloud metrics";
+        }
+
+        @Override
+        public String getUrlName() {
+            return "clever-cloud-metrics";
+        }
+
+        public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException {
+            Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+            rsp.setContentType("text/plain; version=0.0.4; charset=utf-8");
+            final PrintWriter w = rsp.getWriter();
+            get().writePrometheus(w);
+            w.flush();
+        }
+    }
+}
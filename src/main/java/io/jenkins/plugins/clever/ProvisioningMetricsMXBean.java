@@ -0,0 +1,45 @@
+package io.jenkins.plugins.clever;
+
+import java.util.Map;
+
+/**
+ * JMX view on {@link ProvisioningMetrics}. Phase maps are indexed by <code>phase{template=...,zone=...}</code>, queue
+ * maps by cloud name.
+ */
+public interface ProvisioningMetricsMXBean {
+
+    Map<String, Long> getCounts();
+
+    Map<String, Long> getFailures();
+
+    Map<String, Double> getMeanMillis();
+
+    /**
+     * 95th percentile, as upper bound of the matching histogram bucket.
+     */
+    Map<String, Double> getP95Millis();
+
+    /**
+     * Provisioning tasks waiting for a {@link ProvisioningQueue} thread.
+     */
+    Map<String, Integer> getQueueDepth();
+
+    /**
+     * Provisioning tasks running.
+     */
+    Map<String, Integer> getQueueActive();
+
+    Map<String, Long> getQueueAverageWaitMillis();
+
+    Map<String, Long> getQueueMaxWaitMillis();
+
+    /**
+     * Builds which started on a {@link StandbyPool} agent, indexed by <code>cloud/template</code>.
+     */
+    Map<String, Long> getStandbyHits();
+
+    /**
+     * Builds which found the {@link StandbyPool} empty, indexed by <code>cloud/template</code>.
+     */
+    Map<String, Long> getStandbyMisses();
+}
@@ -0,0 +1,205 @@
+package io.jenkins.plugins.clever;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Dedicated executor to run provisioning tasks for a cloud, so a burst in build queue doesn't fire hundreds of
+ * concurrent application creations, nor starves {@link hudson.model.Computer#threadPoolForRemoting}.
+ * <p>
+ * Pending tasks are ordered so labels get served in turn: a burst for some label doesn't delay provisioning for
+ * others. Standby agents only get provisioned once there's no on-demand provisioning pending.
+ */
+final class ProvisioningQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(ProvisioningQueue.class.getName());
+
+    private static final ConcurrentMap<String, ProvisioningQueue> QUEUES = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Number of tasks pending per label.
+     */
+    private final ConcurrentMap<String, AtomicInteger> queued = new ConcurrentHashMap<>();
+
+    private final Statistics statistics = new Statistics();
+
+    private ProvisioningQueue(String cloud, int concurrency) {
+        executor = new ThreadPoolExecutor(concurrency, concurrency, 1, TimeUnit.MINUTES, new PriorityBlockingQueue<>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "Clever Cloud provisioning for " + cloud));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    static ProvisioningQueue of(CleverCloud cloud) {
+        final int concurrency = cloud.getMaxConcurrentProvisioning();
+        final ProvisioningQueue queue = QUEUES.computeIfAbsent(cloud.name, name -> new ProvisioningQueue(name, concurrency));
+        queue.setConcurrency(concurrency);
+        return queue;
+    }
+
+    /**
+     * Queues of all clouds, indexed by cloud name.
+     */
+    static Map<String, ProvisioningQueue> all() {
+        return Collections.unmodifiableMap(QUEUES);
+    }
+
+    private void setConcurrency(int concurrency) {
+        if (executor.getMaximumPoolSize() == concurrency) return;
+        synchronized (executor) {
+            if (concurrency > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(concurrency);
+                executor.setCorePoolSize(concurrency);
+            } else {
+                executor.setCorePoolSize(concurrency);
+                executor.setMaximumPoolSize(concurrency);
+            }
+        }
+    }
+
+    /**
+     * Queue a provisioning task.
+     * @param label label string the agent is provisioned for
+     * @param standby agent is provisioned ahead of demand, so can wait for on-demand provisioning to complete
+     */
+    void submit(String label, boolean standby, Runnable task) {
+        final AtomicInteger pending = queued.computeIfAbsent(label, l -> new AtomicInteger());
+        final int rank = pending.getAndIncrement();
+        statistics.submitted.incrementAndGet();
+        executor.execute(new Task(label, standby, rank, sequence.getAndIncrement(), task));
+        LOGGER.log(Level.FINE, "Provisioning queue depth={0}, active={1}, {2}",
+                new Object[]{getQueueDepth(), getActive(), statistics});
+    }
+
+    Statistics getStatistics() {
+        return statistics;
+    }
+
+    int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    int getActive() {
+        return executor.getActiveCount();
+    }
+
+    private final class Task implements Runnable, Comparable<Task> {
+
+        private final String label;
+        private final boolean standby;
+        private final int rank;
+        private final long sequence;
+        private final Runnable task;
+        private final long queuedAt = System.currentTimeMillis();
+
+        Task(String label, boolean standby, int rank, long sequence, Runnable task) {
+            this.label = label;
+            this.standby = standby;
+            this.rank = rank;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            queued.get(label).decrementAndGet();
+            final long start = System.currentTimeMillis();
+            statistics.waited(start - queuedAt);
+            try {
+                task.run();
+            } catch (Throwable t) {
+                statistics.failed.incrementAndGet();
+                LOGGER.log(Level.WARNING, "Provisioning task failed for " + label, t);
+            } finally {
+                statistics.ran(System.currentTimeMillis() - start);
+            }
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            if (standby != o.standby) return standby ? 1 : -1;
+            if (rank != o.rank) return Integer.compare(rank, o.rank);
+            return Long.compare(sequence, o.sequence);
+        }
+    }
+
+    static final class Statistics {
+
+        private final AtomicLong submitted = new AtomicLong();
+        private final AtomicLong started = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong totalWait = new AtomicLong();
+        private final AtomicLong maxWait = new AtomicLong();
+        private final AtomicLong totalRun = new AtomicLong();
+
+        private void waited(long ms) {
+            started.incrementAndGet();
+            totalWait.addAndGet(ms);
+            maxWait.accumulateAndGet(ms, Math::max);
+        }
+
+        private void ran(long ms) {
+            totalRun.addAndGet(ms);
+            completed.incrementAndGet();
+        }
+
+        long getSubmitted() {
+            return submitted.get();
+        }
+
+        /**
+         * Tasks which left the queue, and so were accounted in wait time.
+         */
+        long getStarted() {
+            return started.get();
+        }
+
+        long getCompleted() {
+            return completed.get();
+        }
+
+        long getFailed() {
+            return failed.get();
+        }
+
+        long getMaxWait() {
+            return maxWait.get();
+        }
+
+        long getTotalWait() {
+            return totalWait.get();
+        }
+
+        long getAverageWait() {
+            final long n = started.get();
+            return n == 0 ? 0 : totalWait.get() / n;
+        }
+
+        long getAverageRun() {
+            final long n = completed.get();
+            return n == 0 ? 0 : totalRun.get() / n;
+        }
+
+        @Override
+        public String toString() {
+            return "submitted=" + submitted + ", completed=" + completed + ", failed=" + failed
+                    + ", avgWait=" + getAverageWait() + "ms, maxWait=" + maxWait + "ms, avgRun=" + getAverageRun() + "ms";
+        }
+    }
+}
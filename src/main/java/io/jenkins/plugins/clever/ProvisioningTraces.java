@@ -0,0 +1,319 @@
+package io.jenkins.plugins.clever;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.RootAction;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import org.kohsuke.stapler.StaplerProxy;
+
+import javax.annotation.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Timeline of every step an agent went through, from being planned to its application being deleted, with API
+ * response times, so we can tell why a specific agent was slow to come online.
+ * <p>
+ * Traces of terminated agents are kept in a bounded history. Both are persisted as
+ * <code>clever-cloud-traces.xml</code>, so we can still debug latency outliers after a restart.
+ */
+@Extension
+public class ProvisioningTraces {
+
+    private static final Logger LOGGER = Logger.getLogger(ProvisioningTraces.class.getName());
+
+    private static final int HISTORY = Integer.getInteger(ProvisioningTraces.class.getName() + ".history", 100);
+
+    private static final long SAVE_DELAY = TimeUnit.SECONDS.toMillis(5);
+
+    public enum Phase {
+        PLANNED("Planned"),
+        APPLICATION_CREATED("Application created"),
+        CACHES_LINKED("Caches linked"),
+        ENV_SET("Environment set"),
+        PUSHED("Git pushed"),
+        BUILD_STARTED("Deployment started"),
+        DEPLOYED("Deployed"),
+        CONNECTED("Agent connected"),
+        FIRST_BUILD("First build"),
+        TERMINATED("Terminated");
+
+        private final String displayName;
+
+        Phase(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    public static final class Step {
+        private final Phase phase;
+        /** ms since agent was planned */
+        private final long offset;
+        /** ms spent on API call(s) for this step, <code>-1</code> for an event */
+        private final long duration;
+        private final String failure;
+
+        Step(Phase phase, long offset, long duration, @CheckForNull String failure) {
+            this.phase = phase;
+            this.offset = offset;
+            this.duration = duration;
+            this.failure = failure;
+        }
+
+        public Phase getPhase() {
+            return phase;
+        }
+
+        public String getOffset() {
+            return Util.getTimeSpanString(offset);
+        }
+
+        @CheckForNull
+        public String getDuration() {
+            return duration < 0 ? null : duration + " ms";
+        }
+
+        @CheckForNull
+        public String getFailure() {
+            return failure;
+        }
+    }
+
+    public static final class Trace {
+        private final String nodeName;
+        private final String template;
+        private final long start;
+        /* guarded by this */
+        private final List<Step> steps = new ArrayList<>();
+
+        Trace(String nodeName, String template, long start) {
+            this.nodeName = nodeName;
+            this.template = template;
+            this.start = start;
+        }
+
+        public String getNodeName() {
+            return nodeName;
+        }
+
+        public String getTemplate() {
+            return template;
+        }
+
+        public Date getStartDate() {
+            return new Date(start);
+        }
+
+        public synchronized List<Step> getSteps() {
+            return new ArrayList<>(steps);
+        }
+
+        synchronized boolean has(Phase phase) {
+            for (Step s : steps) {
+                if (s.phase == phase) return true;
+            }
+            return false;
+        }
+
+        synchronized void add(Phase phase, long timestamp, long duration, @CheckForNull String failure) {
+            steps.add(new Step(phase, timestamp - start, duration, failure));
+        }
+    }
+
+    private final ConcurrentMap<String, Trace> active = new ConcurrentHashMap<>();
+
+    /* guarded by this, most recent first */
+    private final Deque<Trace> history = new ArrayDeque<>();
+
+    private final AtomicBoolean saving = new AtomicBoolean();
+
+    public static ProvisioningTraces get() {
+        return ExtensionList.lookup(ProvisioningTraces.class).get(ProvisioningTraces.class);
+    }
+
+    /**
+     * Start tracing an agent.
+     * @param planned timestamp agent was planned, before it even got a name
+     */
+    void start(String nodeName, String template, long planned) {
+        final Trace trace = new Trace(nodeName, template, planned);
+        trace.add(Phase.PLANNED, planned, -1, null);
+        active.put(nodeName, trace);
+        saveLater();
+    }
+
+    /**
+     * Record an event.
+     */
+    void record(String nodeName, Phase phase) {
+        record(nodeName, phase, -1, null);
+    }
+
+    /**
+     * Record a step which started at <code>start</code> and just completed.
+     */
+    void record(String nodeName, Phase phase, long start, @CheckForNull String failure) {
+        final Trace trace = active.get(nodeName);
+        if (trace == null) return;
+        final long now = System.currentTimeMillis();
+        trace.add(phase, now, start < 0 ? -1 : now - start, failure);
+        saveLater();
+    }
+
+    /**
+     * Run a step and record it.
+     */
+    <T> T time(String nodeName, Phase phase, Retry.Call<T> call) throws Exception {
+        final long start = System.currentTimeMillis();
+        try {
+            final T t = call.call();
+            record(nodeName, phase, start, null);
+            return t;
+        } catch (Exception e) {
+            record(nodeName, phase, start, e.toString());
+            throw e;
+        }
+    }
+
+    void recordApplication(String applicationId, Phase phase) {
+        final AgentRegistry.Entry e = AgentRegistry.get().get(applicationId);
+        if (e != null) record(e.getNodeName(), phase);
+    }
+
+    void firstBuild(String nodeName) {
+        final Trace trace = active.get(nodeName);
+        if (trace != null && !trace.has(Phase.FIRST_BUILD)) record(nodeName, Phase.FIRST_BUILD);
+    }
+
+    /**
+     * Agent's application has been deleted, move its trace to history.
+     */
+    void terminated(String nodeName) {
+        record(nodeName, Phase.TERMINATED);
+        final Trace trace = active.remove(nodeName);
+        if (trace == null) return;
+        synchronized (this) {
+            history.addFirst(trace);
+            while (history.size() > HISTORY) history.removeLast();
+        }
+        saveLater();
+    }
+
+    @CheckForNull
+    public Trace get(String nodeName) {
+        final Trace trace = active.get(nodeName);
+        if (trace != null) return trace;
+        synchronized (this) {
+            for (Trace t : history) {
+                if (t.nodeName.equals(nodeName)) return t;
+            }
+        }
+        return null;
+    }
+
+    public List<Trace> getActive() {
+        final List<Trace> l = new ArrayList<>(active.values());
+        l.sort((a, b) -> Long.compare(b.start, a.start));
+        return l;
+    }
+
+    public synchronized List<Trace> getHistory() {
+        return new ArrayList<>(history);
+    }
+
+    private XmlFile getConfigFile() {
+        return new XmlFile(Jenkins.XSTREAM2, new File(Jenkins.getInstance().getRootDir(), "clever-cloud-traces.xml"));
+    }
+
+    private void saveLater() {
+        if (!saving.compareAndSet(false, true)) return;
+        Timer.get().schedule(() -> {
+            saving.set(false);
+            try {
+                save();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to save Clever Cloud provisioning traces", e);
+            }
+        }, SAVE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void save() throws IOException {
+        final List<Trace> traces = new ArrayList<>(active.values());
+        traces.addAll(history);
+        getConfigFile().write(traces);
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized void load() throws IOException {
+        final XmlFile file = getConfigFile();
+        if (!file.exists()) return;
+        for (Trace t : (List<Trace>) file.read()) {
+            if (t.has(Phase.TERMINATED)) {
+                history.addLast(t);
+            } else {
+                active.put(t.nodeName, t);
+            }
+        }
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void init() throws IOException {
+        get().load();
+    }
+
+    /**
+     * All traces, on <code>/clever-cloud-traces/</code>. Administrators only.
+     */
+    @Extension
+    public static class Endpoint implements RootAction, StaplerProxy {
+
+        @Override
+        public Object getTarget() {
+            Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+            return this;
+        }
+
+        @Override
+        public String getIconFileName() {
+            return null;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Clever Cloud provisioning traces";
+        }
+
+        @Override
+        public String getUrlName() {
+            return "clever-cloud-traces";
+        }
+
+        public List<Trace> getActive() {
+            return get().getActive();
+        }
+
+        public List<Trace> getHistory() {
+            return get().getHistory();
+        }
+    }
+}
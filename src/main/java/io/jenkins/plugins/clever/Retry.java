@@ -0,0 +1,114 @@
+package io.jenkins.plugins.clever;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Run calls to Clever Cloud (API or git deploy endpoint) with retries on transient failures (rate limit, server
+ * errors, network), using exponential backoff with jitter and honoring <code>Retry-After</code>.
+ * <p>
+ * Non-idempotent calls are only retried when we know for sure the request hasn't been processed.
+ */
+final class Retry {
+
+    private static final Logger LOGGER = Logger.getLogger(Retry.class.getName());
+
+    private static final int MAX_ATTEMPTS = Integer.getInteger(Retry.class.getName() + ".maxAttempts", 5);
+
+    private static final long BASE_DELAY = 500;
+
+    private static final long MAX_DELAY = TimeUnit.SECONDS.toMillis(30);
+
+    interface Call<T> {
+        T call() throws Exception;
+    }
+
+    private Retry() {
+    }
+
+    /**
+     * @param breaker circuit breaker to report failures to, if any
+     * @param idempotent call can safely be repeated
+     */
+    static <T> T call(@CheckForNull CircuitBreaker breaker, boolean idempotent, Call<T> call) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            if (breaker != null && !breaker.acquire()) {
+                throw new IOException("Clever Cloud API is unavailable, circuit breaker is open");
+            }
+            try {
+                final T t = call.call();
+                if (breaker != null) breaker.success();
+                return t;
+            } catch (Exception e) {
+                // we've been asked to stop, retrying would only delay it
+                if (!isTransient(e) || Thread.currentThread().isInterrupted()) {
+                    if (breaker != null) breaker.release();
+                    throw e;
+                }
+                if (breaker != null) breaker.failure();
+                if (attempt >= MAX_ATTEMPTS || !(idempotent || isSafe(e))) throw e;
+
+                final long backoff = Math.min(MAX_DELAY, BASE_DELAY << (attempt - 1));
+                final long delay = Math.max(ThreadLocalRandom.current().nextLong(backoff + 1), retryAfter(e));
+                LOGGER.log(Level.FINE, "Transient failure, retrying in " + delay + "ms", e);
+                Thread.sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * Failure is likely to go away if we try again later.
+     */
+    /* package */ static boolean isTransient(Exception e) {
+        // remote refused our commit, pushing it again won't help
+        if (e instanceof DeployPack.PushRejectedException) return false;
+        if (isInterruption(e) || isInterruption(e.getCause())) return false;
+        if (e instanceof ApiException) {
+            final int code = ((ApiException) e).getCode();
+            return code == 0 || code == 429 || code >= 500; // code 0 means we didn't get any response
+        }
+        return e instanceof IOException;
+    }
+
+    /**
+     * I/O was aborted because calling thread has been interrupted, as opposed to a timeout.
+     */
+    private static boolean isInterruption(@CheckForNull Throwable t) {
+        return t instanceof InterruptedIOException && !(t instanceof SocketTimeoutException);
+    }
+
+    /**
+     * Failure tells us request has not been processed, so it's safe to retry even for a non-idempotent call.
+     */
+    private static boolean isSafe(Exception e) {
+        if (e instanceof ApiException) {
+            final int code = ((ApiException) e).getCode();
+            return code == 429 || code == 503 || e.getCause() instanceof ConnectException;
+        }
+        return e instanceof ConnectException;
+    }
+
+    private static long retryAfter(Exception e) {
+        if (!(e instanceof ApiException)) return 0;
+        final Map<String, List<String>> headers = ((ApiException) e).getResponseHeaders();
+        if (headers == null) return 0;
+        for (Map.Entry<String, List<String>> h : headers.entrySet()) {
+            if (!"Retry-After".equalsIgnoreCase(h.getKey()) || h.getValue() == null || h.getValue().isEmpty()) continue;
+            try {
+                return Math.min(MAX_DELAY, TimeUnit.SECONDS.toMillis(Long.parseLong(h.getValue().get(0).trim())));
+            } catch (NumberFormatException nfe) {
+                return 0; // HTTP-date format, not worth the effort
+            }
+        }
+        return 0;
+    }
+}
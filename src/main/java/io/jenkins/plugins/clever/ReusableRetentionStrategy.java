@@ -0,0 +1,73 @@
+package io.jenkins.plugins.clever;
+
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.Executor;
+import hudson.remoting.VirtualChannel;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link hudson.slaves.RetentionStrategy} that keeps Node for subsequent builds, until it has run
+ * <code>maxBuilds</code> builds or has been idle for <code>idleMinutes</code>.
+ */
+public class ReusableRetentionStrategy extends OneShotRetentionStrategy {
+
+    private static final Logger LOGGER = Logger.getLogger(ReusableRetentionStrategy.class.getName());
+
+    private final int maxBuilds;
+
+    private final int idleMinutes;
+
+    private final boolean cleanWorkspace;
+
+    public ReusableRetentionStrategy(int maxBuilds, int idleMinutes, boolean cleanWorkspace) {
+        this.maxBuilds = Math.max(0, maxBuilds);
+        this.idleMinutes = Math.max(1, idleMinutes);
+        this.cleanWorkspace = cleanWorkspace;
+    }
+
+    @Override
+    protected long getIdleMaxTime() {
+        return TimeUnit.MINUTES.toMillis(idleMinutes);
+    }
+
+    @Override
+    protected void completed(Executor executor) {
+        final Computer owner = executor.getOwner();
+        if (!(owner instanceof CleverComputer)) return;
+
+        final CleverComputer c = (CleverComputer) owner;
+        final VirtualChannel channel = c.getChannel();
+        if (channel != null) HealthResponder.busy(channel, false);
+
+        final int builds = c.buildCompleted();
+        if (maxBuilds > 0 && builds >= maxBuilds) {
+            LOGGER.log(Level.FINE, "{0} has run {1} builds", new Object[]{c.getName(), builds});
+            done(executor);
+            return;
+        }
+
+        if (cleanWorkspace) {
+            // don't accept a new build until workspace has been cleaned up
+            c.setAcceptingTasks(false);
+            Computer.threadPoolForRemoting.submit(() -> {
+                try {
+                    final CleverAgent node = c.getNode();
+                    final FilePath root = node != null ? node.getRootPath() : null;
+                    if (root != null) {
+                        root.child("workspace").deleteContents();
+                    }
+                    c.setAcceptingTasks(true);
+                } catch (IOException | InterruptedException e) {
+                    // we don't want a polluted workspace to break next build
+                    LOGGER.log(Level.WARNING, "Failed to cleanup workspace on " + c.getName() + ", terminating", e);
+                    done(executor);
+                }
+            });
+        }
+    }
+}
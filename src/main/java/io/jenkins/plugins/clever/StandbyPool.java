@@ -0,0 +1,205 @@
+package io.jenkins.plugins.clever;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.slaves.Cloud;
+import jenkins.model.Jenkins;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keep {@link AgentTemplate#getMinIdle()} agents deployed and connected ahead of demand, so a build can start
+ * without waiting for a full Clever Cloud deployment.
+ * <p>
+ * Pool is refilled periodically and as soon as a standby agent get consumed by a build. Hits (builds which
+ * started on a standby agent) and misses (builds which found the pool empty) are recorded per template and exposed
+ * by {@link ProvisioningMetrics}, so the pool size can be tuned.
+ */
+@Extension
+public class StandbyPool extends AsyncPeriodicWork {
+
+    private static final Logger LOGGER = Logger.getLogger(StandbyPool.class.getName());
+
+    /**
+     * Standby agents being provisioned, indexed by {@link #key(CleverCloud, AgentTemplate)}.
+     */
+    private final ConcurrentMap<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Statistics> statistics = new ConcurrentHashMap<>();
+
+    public StandbyPool() {
+        super("Clever Cloud standby agents");
+    }
+
+    public static StandbyPool get() {
+        return ExtensionList.lookup(StandbyPool.class).get(StandbyPool.class);
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.MINUTES.toMillis(1);
+    }
+
+    @Override
+    protected void execute(TaskListener listener) {
+        for (Cloud cloud : Jenkins.getInstance().clouds) {
+            if (!(cloud instanceof CleverCloud)) continue;
+            for (AgentTemplate template : ((CleverCloud) cloud).getTemplates()) {
+                refill((CleverCloud) cloud, template);
+            }
+        }
+        for (Map.Entry<String, Statistics> e : statistics.entrySet()) {
+            LOGGER.log(Level.FINE, "{0}: {1}", new Object[]{e.getKey(), e.getValue()});
+        }
+    }
+
+    /**
+     * Statistics for all templates, indexed by <code>cloud/template</code>.
+     */
+    public Map<String, Statistics> getStatistics() {
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    /**
+     * A build has been assigned to an agent. This is a hit if build took a standby agent, or a miss if this template
+     * keeps a pool but none of its agents was left, so build had to wait for an agent provisioned on demand. Further
+     * builds on a reusable agent aren't taken from pool and are ignored.
+     */
+    /* package */ void take(CleverAgent agent) {
+        if (!agent.markUsed()) return;
+
+        final CleverCloud cloud = agent.getCloud();
+        final AgentTemplate template = cloud.getTemplate(agent.getTemplate());
+        if (template == null) return; // template has been removed since agent was provisioned
+
+        if (agent.isStandby()) {
+            agent.setStandby(false);
+            statistics(cloud, template).hits.incrementAndGet();
+            Computer.threadPoolForRemoting.submit(() -> refill(cloud, template));
+        } else if (template.getMinIdle() > 0 && standby(cloud, template).isEmpty()) {
+            statistics(cloud, template).misses.incrementAndGet();
+        }
+    }
+
+    private static List<CleverAgent> standby(CleverCloud cloud, AgentTemplate template) {
+        final List<CleverAgent> standby = new ArrayList<>();
+        for (Node node : Jenkins.getInstance().getNodes()) {
+            if (!(node instanceof CleverAgent)) continue;
+            final CleverAgent agent = (CleverAgent) node;
+            if (agent.isStandby()
+                    && cloud.name.equals(agent.getCloudName())
+                    && template.getDisplayName().equals(agent.getTemplate())) {
+                standby.add(agent);
+            }
+        }
+        return standby;
+    }
+
+    /* package */ void refill(CleverCloud cloud, AgentTemplate template) {
+        if (Jenkins.getInstance().isQuietingDown()) return;
+
+        final String key = key(cloud, template);
+        final AtomicInteger provisioning = inFlight.computeIfAbsent(key, k -> new AtomicInteger());
+        // periodic and consumption triggered refills can run concurrently, and would both see the same missing agents
+        synchronized (provisioning) {
+            final List<CleverAgent> standby = standby(cloud, template);
+
+            int missing = template.getMinIdle() - standby.size() - provisioning.get();
+
+            if (missing > 0) {
+                LOGGER.log(Level.FINE, "Provisioning {0} standby agents for {1}", new Object[]{missing, key});
+            }
+            for (int i = 0; i < missing; i++) {
+                final CapacityTracker.Reservation reservation = CapacityTracker.of(cloud).reserve(cloud, template);
+                if (reservation == null) {
+                    LOGGER.log(Level.FINE, "Max instances reached, can't provision standby agents for {0}", key);
+                    break;
+                }
+                provisioning.incrementAndGet();
+                ProvisioningQueue.of(cloud).submit(template.getLabel(), true, () -> {
+                    try {
+                        cloud.provisionStandby(template, reservation);
+                    } catch (Throwable t) {
+                        LOGGER.log(Level.WARNING, "Failed to provision standby agent for " + key, t);
+                    } finally {
+                        // no-op once bound to an application
+                        reservation.cancel();
+                        provisioning.decrementAndGet();
+                    }
+                });
+            }
+
+            // pool has been reduced, release surplus agents which are still idle
+            for (int i = 0; i < -missing && i < standby.size(); i++) {
+                final CleverAgent agent = standby.get(i);
+                final Computer computer = agent.toComputer();
+                if (computer == null || !computer.isIdle()) continue;
+                agent.setStandby(false);
+                computer.setAcceptingTasks(false);
+                Computer.threadPoolForRemoting.submit(() -> {
+                    try {
+                        agent.terminate();
+                    } catch (Exception e) {
+                        LOGGER.log(Level.WARNING, "Failed to terminate surplus standby agent " + agent.getNodeName(), e);
+                    }
+                });
+            }
+        }
+    }
+
+    private Statistics statistics(CleverCloud cloud, AgentTemplate template) {
+        return statistics.computeIfAbsent(key(cloud, template), k -> new Statistics(cloud.name, template.getDisplayName()));
+    }
+
+    private static String key(CleverCloud cloud, AgentTemplate template) {
+        return cloud.name + "/" + template.getDisplayName();
+    }
+
+    public static final class Statistics {
+
+        private final String cloud;
+        private final String template;
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+
+        private Statistics(String cloud, String template) {
+            this.cloud = cloud;
+            this.template = template;
+        }
+
+        public String getCloud() {
+            return cloud;
+        }
+
+        public String getTemplate() {
+            return template;
+        }
+
+        public long getHits() {
+            return hits.get();
+        }
+
+        public long getMisses() {
+            return misses.get();
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + ", misses=" + misses;
+        }
+    }
+}
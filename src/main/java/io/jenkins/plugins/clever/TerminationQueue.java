@@ -0,0 +1,105 @@
+package io.jenkins.plugins.clever;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Computer;
+import jenkins.util.Timer;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * All Clever Cloud applications deletion go through this queue, so they never run while holding the build queue lock,
+ * and a terminated agent only get a single <code>DELETE</code> request even when terminated from various places.
+ * <p>
+ * Failed deletions are retried with exponential backoff. Pending deletions are persisted as
+ * {@link AgentRegistry.State#TERMINATING} in {@link AgentRegistry}, and resumed on startup.
+ */
+@Extension
+public class TerminationQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(TerminationQueue.class.getName());
+
+    /* package */ static long initialDelay = TimeUnit.SECONDS.toMillis(10);
+
+    private static final long MAX_DELAY = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Applications being deleted, with failed attempts so far.
+     */
+    private final ConcurrentMap<String, Integer> pending = new ConcurrentHashMap<>();
+
+    public static TerminationQueue get() {
+        return ExtensionList.lookup(TerminationQueue.class).get(TerminationQueue.class);
+    }
+
+    /**
+     * Schedule deletion for an application. Does nothing if application is already queued or unknown to
+     * {@link AgentRegistry}, i.e. already deleted.
+     */
+    void enqueue(String applicationId) {
+        final AgentRegistry registry = AgentRegistry.get();
+        if (registry.get(applicationId) == null) return;
+        if (pending.putIfAbsent(applicationId, 0) != null) return;
+        registry.setState(applicationId, AgentRegistry.State.TERMINATING);
+        Computer.threadPoolForRemoting.submit(() -> attempt(applicationId));
+    }
+
+    /**
+     * Number of applications waiting for deletion.
+     */
+    public int size() {
+        return pending.size();
+    }
+
+    private void attempt(String applicationId) {
+        final AgentRegistry.Entry entry = AgentRegistry.get().get(applicationId);
+        if (entry == null) {
+            pending.remove(applicationId);
+            return;
+        }
+
+        try {
+            final CleverCloud cloud = AgentRegistry.get().getCloud(entry.getCloud());
+            if (cloud == null) throw new IOException("Cloud " + entry.getCloud() + " does not exist");
+            cloud.terminate(entry);
+            pending.remove(applicationId);
+            LOGGER.log(Level.FINE, "Deleted application {0}", applicationId);
+        } catch (IOException | RuntimeException e) {
+            final int attempts = pending.merge(applicationId, 1, Integer::sum);
+            final long delay = delay(attempts);
+            LOGGER.log(Level.WARNING, "Failed to delete application " + applicationId + " (attempt " + attempts
+                    + "), retrying in " + TimeUnit.MILLISECONDS.toSeconds(delay) + "s", e);
+            Timer.get().schedule(() -> Computer.threadPoolForRemoting.submit(() -> attempt(applicationId)),
+                    delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Exponential backoff with jitter, so a Clever Cloud outage doesn't end with all deletions retried at once.
+     */
+    private static long delay(int attempts) {
+        final long max = Math.min(MAX_DELAY, initialDelay << Math.min(attempts - 1, 20));
+        return max / 2 + ThreadLocalRandom.current().nextLong(max / 2 + 1);
+    }
+
+    /**
+     * Resume deletions interrupted by a restart, and delete applications which have lost their node.
+     */
+    @Initializer(after = InitMilestone.COMPLETED)
+    public static void resume() {
+        final TerminationQueue queue = get();
+        for (AgentRegistry.Entry e : AgentRegistry.get().getEntries()) {
+            if (e.getState() == AgentRegistry.State.TERMINATING || !e.isLive()) {
+                queue.enqueue(e.getApplicationId());
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package io.jenkins.plugins.clever;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A simple token bucket, to limit the rate of requests we send to Clever Cloud API while still allowing short bursts.
+ */
+final class TokenBucket {
+
+    private final double capacity;
+
+    private final double tokensPerNano;
+
+    /** guarded by this */
+    private double tokens;
+
+    /** guarded by this */
+    private long lastRefill = System.nanoTime();
+
+    /**
+     * @param rate tokens per second
+     * @param capacity max number of tokens, i.e. max burst size
+     */
+    TokenBucket(double rate, double capacity) {
+        this.capacity = capacity;
+        this.tokensPerNano = rate / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = capacity;
+    }
+
+    /**
+     * Take a token, waiting for one to be available if necessary.
+     */
+    void acquire() throws InterruptedException {
+        while (true) {
+            final long wait;
+            synchronized (this) {
+                refill();
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return;
+                }
+                wait = (long) Math.ceil((1 - tokens) / tokensPerNano);
+            }
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /* guarded by this */
+    private void refill() {
+        final long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
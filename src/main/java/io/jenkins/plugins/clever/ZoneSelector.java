@@ -0,0 +1,106 @@
+package io.jenkins.plugins.clever;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rank the zones a template can be deployed to, by provisioning latency and recent failure rate measured for
+ * each zone, so agents go to the fastest healthy zone and we fall back to another one when a zone is in trouble.
+ */
+final class ZoneSelector {
+
+    private static final ConcurrentMap<String, ZoneSelector> SELECTORS = new ConcurrentHashMap<>();
+
+    /**
+     * Weight of the last sample in moving averages.
+     */
+    private static final double ALPHA = 0.2;
+
+    /**
+     * Failures are forgiven over time, so a zone which has been failing gets another chance once recovered.
+     */
+    private static final long FAILURE_HALF_LIFE = TimeUnit.MINUTES.toMillis(10);
+
+    private final ConcurrentMap<String, Stats> zones = new ConcurrentHashMap<>();
+
+    static ZoneSelector of(CleverCloud cloud) {
+        return SELECTORS.computeIfAbsent(cloud.name, n -> new ZoneSelector());
+    }
+
+    /**
+     * Sort candidate zones, best first. Zones we have no measure for yet come first so they get explored, otherwise
+     * configuration order is kept for zones with same score.
+     */
+    List<String> rank(List<String> candidates) {
+        final long now = System.currentTimeMillis();
+        final List<String> ranked = new ArrayList<>(candidates);
+        ranked.sort(Comparator.comparingDouble(z -> score(z, now)));
+        return ranked;
+    }
+
+    /**
+     * Expected latency to get an agent in the best of these zones, <code>0</code> if we have no measure yet.
+     */
+    double best(List<String> candidates) {
+        final long now = System.currentTimeMillis();
+        double best = 0;
+        for (String zone : candidates) {
+            final double score = score(zone, now);
+            if (score > 0 && (best == 0 || score < best)) best = score;
+        }
+        return best;
+    }
+
+    private double score(String zone, long now) {
+        final Stats s = zones.get(zone);
+        return s == null ? 0 : s.score(now);
+    }
+
+    void succeeded(String zone, long latency) {
+        stats(zone).succeeded(latency, System.currentTimeMillis());
+    }
+
+    void failed(String zone) {
+        stats(zone).failed(System.currentTimeMillis());
+    }
+
+    private Stats stats(String zone) {
+        return zones.computeIfAbsent(zone, z -> new Stats());
+    }
+
+    private static final class Stats {
+        private double latency;
+        private double failureRate;
+        private long updated;
+
+        synchronized void succeeded(long ms, long now) {
+            decay(now);
+            latency = latency == 0 ? ms : (1 - ALPHA) * latency + ALPHA * ms;
+            failureRate = (1 - ALPHA) * failureRate;
+        }
+
+        synchronized void failed(long now) {
+            decay(now);
+            failureRate = (1 - ALPHA) * failureRate + ALPHA;
+        }
+
+        private void decay(long now) {
+            if (updated > 0) failureRate *= Math.pow(0.5, (double) (now - updated) / FAILURE_HALF_LIFE);
+            updated = now;
+        }
+
+        /**
+         * Expected latency to get an agent, accounting for the attempts lost to failures. Lower is better.
+         */
+        synchronized double score(long now) {
+            final double f = failureRate * Math.pow(0.5, (double) (now - updated) / FAILURE_HALF_LIFE);
+            // a zone which only failed so far still has to rank behind a healthy one
+            final double l = latency > 0 ? latency : TimeUnit.MINUTES.toMillis(5);
+            return l / Math.max(0.05, 1 - f);
+        }
+    }
+}
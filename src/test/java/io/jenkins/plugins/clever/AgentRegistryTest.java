@@ -0,0 +1,96 @@
+package io.jenkins.plugins.clever;
+
+import hudson.slaves.RetentionStrategy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AgentRegistryTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void tracksApplicationLifecycle() {
+        final AgentRegistry registry = AgentRegistry.get();
+        registry.register("app_lifecycle", "agent-lifecycle", "cloud", "template", "orga", "par");
+
+        final AgentRegistry.Entry e = registry.get("app_lifecycle");
+        assertNotNull(e);
+        assertSame(e, registry.forNode("agent-lifecycle"));
+        assertEquals(AgentRegistry.State.PROVISIONING, e.getState());
+        assertFalse("node hasn't been added yet", e.isLive());
+
+        assertTrue(registry.setState("app_lifecycle", AgentRegistry.State.ONLINE));
+        assertFalse("already online, i.e. agent reconnected", registry.setState("app_lifecycle", AgentRegistry.State.ONLINE));
+        assertFalse(registry.setState("app_unknown", AgentRegistry.State.ONLINE));
+
+        registry.unregister("app_lifecycle");
+        assertNull(registry.get("app_lifecycle"));
+        assertNull(registry.forNode("agent-lifecycle"));
+    }
+
+    @Test
+    public void filtersEntriesPerCloud() {
+        final AgentRegistry registry = AgentRegistry.get();
+        registry.register("app_a", "agent-a", "cloud-a", "template", "orga", "par");
+        registry.register("app_b", "agent-b", "cloud-b", "template", "orga", "par");
+        assertEquals(1, registry.getEntries("cloud-a").size());
+        assertEquals("app_a", registry.getEntries("cloud-a").get(0).getApplicationId());
+    }
+
+    @Test
+    public void persistsEntries() throws Exception {
+        final AgentRegistry registry = AgentRegistry.get();
+        registry.register("app_saved", "agent-saved", "cloud", "template", "orga", "par");
+        registry.setState("app_saved", AgentRegistry.State.TERMINATING);
+        registry.save();
+
+        final AgentRegistry loaded = new AgentRegistry();
+        loaded.load();
+        final AgentRegistry.Entry e = loaded.get("app_saved");
+        assertNotNull(e);
+        assertEquals("agent-saved", e.getNodeName());
+        assertEquals(AgentRegistry.State.TERMINATING, e.getState());
+        assertSame(e, loaded.forNode("agent-saved"));
+    }
+
+    @Test
+    public void doesNotAdoptUnregisteredAgents() throws Exception {
+        j.jenkins.addNode(new CleverAgent("cloud", "template", "agent-unknown", "orga", "app_unknown", "/home/jenkins",
+                "clever", RetentionStrategy.NOOP));
+        final AgentRegistry loaded = new AgentRegistry();
+        loaded.load();
+        assertNull(loaded.get("app_unknown"));
+    }
+
+    @Test
+    public void cloudLookupFollowsReconfiguration() throws Exception {
+        final AgentRegistry registry = AgentRegistry.get();
+        assertNull(registry.getCloud("reconfigured"));
+
+        final CleverCloud before = cloud("reconfigured");
+        j.jenkins.clouds.add(before);
+        assertSame(before, registry.getCloud("reconfigured"));
+
+        final CleverCloud after = cloud("reconfigured");
+        j.jenkins.clouds.replace(before, after);
+        assertSame(after, registry.getCloud("reconfigured"));
+
+        j.jenkins.clouds.remove(after);
+        assertNull(registry.getCloud("reconfigured"));
+    }
+
+    private static CleverCloud cloud(String name) {
+        return new CleverCloud(name, "credentials", "orga", Collections.singletonList(new AgentTemplate("t", "t")));
+    }
+}
@@ -0,0 +1,58 @@
+package io.jenkins.plugins.clever;
+
+import com.squareup.okhttp.Request;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of getting an authenticated Clever Cloud API client, cached or not, and of OAuth request signing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ApiClientBenchmark {
+
+    private CleverAPICredentials credentials;
+
+    private Request request;
+
+    @Setup(Level.Trial)
+    public void setup(JenkinsState state) {
+        // Secret needs a live Jenkins for its encryption key
+        credentials = new CleverAPICredentials("benchmark", null, "token", "secret", "consumerKey", "consumerSecret");
+        request = new Request.Builder().url("https://api.clever-cloud.com/v2/events/event-socket").build();
+    }
+
+    @Benchmark
+    public ApiClient cachedClient() {
+        return ApiClients.get(credentials);
+    }
+
+    /**
+     * Credentials always get an ID, so we can't rely on {@link ApiClients#get} to build a new client.
+     */
+    @Benchmark
+    public ApiClient newClient() {
+        return ApiClients.create(credentials);
+    }
+
+    @Benchmark
+    public String sign() throws IOException {
+        return ApiClients.authorization(credentials, request);
+    }
+}
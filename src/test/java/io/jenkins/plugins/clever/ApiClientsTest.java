@@ -0,0 +1,66 @@
+package io.jenkins.plugins.clever;
+
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ApiClientsTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Before
+    public void flush() {
+        ApiClients.invalidateAll();
+    }
+
+    @Test
+    public void cachedPerCredentialsId() {
+        final CleverAPICredentials a = credentials("a", "secret");
+        assertSame(ApiClients.get(a), ApiClients.get(a));
+        assertSame("same ID and secrets, i.e. credentials read again from store",
+                ApiClients.get(a), ApiClients.get(credentials("a", "secret")));
+        assertNotSame(ApiClients.get(a), ApiClients.get(credentials("b", "secret")));
+    }
+
+    @Test
+    public void updatedCredentialsGetNewClient() {
+        final ApiClient before = ApiClients.get(credentials("updated", "secret"));
+        final ApiClient after = ApiClients.get(credentials("updated", "rotated"));
+        assertNotSame(before, after);
+        assertSame(after, ApiClients.get(credentials("updated", "rotated")));
+    }
+
+    @Test
+    public void missingCredentialsAreNotCached() {
+        assertNotSame(ApiClients.get(null), ApiClients.get(null));
+    }
+
+    @Test
+    public void invalidateAllEvictsClients() {
+        final CleverAPICredentials c = credentials("evicted", "secret");
+        final ApiClient before = ApiClients.get(c);
+        ApiClients.invalidateAll();
+        assertNotSame(before, ApiClients.get(c));
+    }
+
+    @Test
+    public void savingCredentialsStoreEvictsClients() throws Exception {
+        final CleverAPICredentials c = credentials("saved", "secret");
+        final ApiClient before = ApiClients.get(c);
+        assertSame(before, ApiClients.get(c));
+
+        SystemCredentialsProvider.getInstance().getCredentials().add(c);
+        SystemCredentialsProvider.getInstance().save();
+        assertNotSame(before, ApiClients.get(c));
+    }
+
+    private static CleverAPICredentials credentials(String id, String secret) {
+        return new CleverAPICredentials(id, null, "token", secret, "consumerKey", "consumerSecret");
+    }
+}
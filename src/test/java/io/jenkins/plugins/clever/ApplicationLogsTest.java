@@ -0,0 +1,45 @@
+package io.jenkins.plugins.clever;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ApplicationLogsTest {
+
+    private final ApplicationLogs logs = new ApplicationLogs(null, "app_logs", null);
+
+    @Test
+    public void formatsEvents() {
+        assertEquals("2018-01-01T00:00:00.000Z Starting agent",
+                logs.format(event("2018-01-01T00:00:00.000Z", "1", "Starting agent")));
+        assertEquals("plain text", logs.format("plain text"));
+        assertNull(logs.format(": keep-alive"));
+        assertNull(logs.format("event: message"));
+    }
+
+    @Test
+    public void skipsEventsReplayedOnReconnect() {
+        assertEquals("2018-01-01T00:00:01.000Z a", logs.format(event("2018-01-01T00:00:01.000Z", "1", "a")));
+        assertEquals("2018-01-01T00:00:02.000Z b", logs.format(event("2018-01-01T00:00:02.000Z", "2", "b")));
+        assertEquals("2018-01-01T00:00:02.000Z c", logs.format(event("2018-01-01T00:00:02.000Z", "3", "c")));
+
+        // reconnected, stream replays some history
+        assertNull(logs.format(event("2018-01-01T00:00:01.000Z", "1", "a")));
+        assertNull(logs.format(event("2018-01-01T00:00:02.000Z", "2", "b")));
+        assertNull(logs.format(event("2018-01-01T00:00:02.000Z", "3", "c")));
+        // same timestamp as last event we got, but one we haven't seen yet
+        assertEquals("2018-01-01T00:00:02.000Z d", logs.format(event("2018-01-01T00:00:02.000Z", "4", "d")));
+        assertEquals("2018-01-01T00:00:03.000Z e", logs.format(event("2018-01-01T00:00:03.000Z", "5", "e")));
+    }
+
+    @Test
+    public void keepsRepeatedMessages() {
+        assertEquals("2018-01-01T00:00:01.000Z retrying", logs.format(event("2018-01-01T00:00:01.000Z", "1", "retrying")));
+        assertEquals("2018-01-01T00:00:01.000Z retrying", logs.format(event("2018-01-01T00:00:01.000Z", "2", "retrying")));
+    }
+
+    private static String event(String timestamp, String id, String message) {
+        return "data: {\"_id\":\"" + id + "\",\"_source\":{\"@timestamp\":\"" + timestamp + "\",\"@message\":\"" + message + "\"}}";
+    }
+}
@@ -0,0 +1,27 @@
+package io.jenkins.plugins.clever;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CacheVolumesTest {
+
+    private static final String TAG = "jenkins:0123456789abcdef:my-cloud";
+
+    @Test
+    public void parsesBucketName() {
+        final String name = TAG + ":cache:maven:par:1546300800000";
+        assertEquals("maven:par", CacheVolumes.cache(name));
+        assertEquals(1546300800000L, CacheVolumes.created(name));
+    }
+
+    @Test
+    public void cacheNameMayHaveDashesAndUnderscores() {
+        assertEquals("gradle-user_home:mtl", CacheVolumes.cache(TAG + ":cache:gradle-user_home:mtl:1"));
+    }
+
+    @Test
+    public void malformedTimestampIsOldest() {
+        assertEquals(0, CacheVolumes.created(TAG + ":cache:maven:par:yesterday"));
+    }
+}
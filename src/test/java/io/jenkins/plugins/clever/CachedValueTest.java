@@ -0,0 +1,136 @@
+package io.jenkins.plugins.clever;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class CachedValueTest {
+
+    /**
+     * Returns the number of loads so far, each load waiting for {@link #release} once it is armed.
+     */
+    private static final class CountingLoader implements CachedValue.Loader<Integer> {
+        final AtomicInteger loads = new AtomicInteger();
+        volatile CountDownLatch release = new CountDownLatch(0);
+
+        @Override
+        public Integer load() throws Exception {
+            final int n = loads.incrementAndGet();
+            release.await(1, TimeUnit.MINUTES);
+            return n;
+        }
+    }
+
+    @Test
+    public void freshValueIsCached() throws Exception {
+        final CountingLoader loader = new CountingLoader();
+        final CachedValue<Integer> value = new CachedValue<>(loader, TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(10));
+        assertEquals(1, (int) value.get());
+        assertEquals(1, (int) value.get());
+        assertEquals(1, loader.loads.get());
+    }
+
+    @Test
+    public void staleValueIsServedWhileRevalidating() throws Exception {
+        final CountingLoader loader = new CountingLoader();
+        final CachedValue<Integer> value = new CachedValue<>(loader, 0, TimeUnit.MINUTES.toMillis(10));
+        assertEquals(1, (int) value.get());
+
+        loader.release = new CountDownLatch(1);
+        Thread.sleep(5);
+        // refresh is blocked, but expired value is still good enough
+        assertEquals(1, (int) value.get());
+        assertEquals(1, (int) value.get());
+        loader.release.countDown();
+
+        awaitValue(value, 2);
+    }
+
+    @Test
+    public void tooStaleValueWaitsForLoad() throws Exception {
+        final CountingLoader loader = new CountingLoader();
+        final CachedValue<Integer> value = new CachedValue<>(loader, 0, 0);
+        assertEquals(1, (int) value.get());
+        Thread.sleep(5);
+        assertEquals(2, (int) value.get());
+    }
+
+    @Test
+    public void concurrentLoadsAreCoalesced() throws Exception {
+        final CountingLoader loader = new CountingLoader();
+        loader.release = new CountDownLatch(1);
+        final CachedValue<Integer> value = new CachedValue<>(loader, TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(10));
+
+        final int threads = 16;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(value::get));
+            }
+            // let all callers pile up on the in-flight load
+            Thread.sleep(200);
+            loader.release.countDown();
+            for (Future<Integer> f : results) {
+                assertEquals(1, (int) f.get(1, TimeUnit.MINUTES));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loader.loads.get());
+    }
+
+    @Test
+    public void getIfPresentDoesNotWait() throws Exception {
+        final CountingLoader loader = new CountingLoader();
+        loader.release = new CountDownLatch(1);
+        final CachedValue<Integer> value = new CachedValue<>(loader, TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(10));
+
+        assertNull(value.getIfPresent());
+        assertNull(value.getIfPresent());
+        loader.release.countDown();
+        awaitValue(value, 1);
+        assertEquals("second call joined the load started by the first one", 1, loader.loads.get());
+    }
+
+    @Test
+    public void failureIsReportedAndRetried() throws Exception {
+        final ApiException failure = new ApiException(503, "Service Unavailable");
+        final AtomicInteger loads = new AtomicInteger();
+        final CachedValue<String> value = new CachedValue<>(() -> {
+            if (loads.incrementAndGet() == 1) throw failure;
+            return "ok";
+        }, TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(10));
+
+        try {
+            value.get();
+            fail("expected load failure");
+        } catch (ApiException e) {
+            assertSame(failure, e);
+        }
+        assertEquals("ok", value.get());
+    }
+
+    private static void awaitValue(CachedValue<Integer> value, int expected) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (true) {
+            // with no TTL, value may already have been refreshed again
+            final Integer v = value.getIfPresent();
+            if (v != null && v >= expected) return;
+            if (System.currentTimeMillis() > deadline) fail("value never got refreshed to " + expected);
+            Thread.sleep(10);
+        }
+    }
+}
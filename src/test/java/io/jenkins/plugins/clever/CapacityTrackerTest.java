@@ -0,0 +1,103 @@
+package io.jenkins.plugins.clever;
+
+import hudson.slaves.RetentionStrategy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class CapacityTrackerTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void enforcesTemplateCap() {
+        final AgentTemplate template = new AgentTemplate("capped", "capped");
+        template.setMaxInstances(2);
+        final CleverCloud cloud = cloud("template-cap", template);
+        final CapacityTracker capacity = CapacityTracker.of(cloud);
+
+        assertNotNull(capacity.reserve(cloud, template));
+        assertNotNull(capacity.reserve(cloud, template));
+        assertNull(capacity.reserve(cloud, template));
+        assertEquals(0, capacity.getRemaining(cloud, template));
+        assertEquals(2, capacity.getInstances("capped"));
+        assertEquals("refused reservation doesn't hold a cloud slot", 2, capacity.getTotal());
+    }
+
+    @Test
+    public void enforcesCloudCap() {
+        final AgentTemplate template = new AgentTemplate("uncapped", "uncapped");
+        final CleverCloud cloud = cloud("cloud-cap", template);
+        cloud.setMaxInstances(1);
+        final CapacityTracker capacity = CapacityTracker.of(cloud);
+
+        assertNotNull(capacity.reserve(cloud, template));
+        assertNull(capacity.reserve(cloud, template));
+        assertEquals("refused reservation doesn't hold a template slot", 1, capacity.getInstances("uncapped"));
+        assertEquals(1, capacity.getTotal());
+    }
+
+    @Test
+    public void cancelledReservationReleasesSlot() {
+        final AgentTemplate template = new AgentTemplate("cancel", "cancel");
+        final CleverCloud cloud = cloud("cancel", template);
+        final CapacityTracker capacity = CapacityTracker.of(cloud);
+
+        final CapacityTracker.Reservation reservation = capacity.reserve(cloud, template);
+        assertNotNull(reservation);
+        assertEquals(1, capacity.getProvisioning("cancel"));
+        reservation.cancel();
+        reservation.cancel();
+        assertEquals(0, capacity.getProvisioning("cancel"));
+        assertEquals(0, capacity.getInstances("cancel"));
+        assertEquals(0, capacity.getTotal());
+    }
+
+    @Test
+    public void boundReservationIsReleasedOnDeletion() {
+        final AgentTemplate template = new AgentTemplate("bound", "bound");
+        final CleverCloud cloud = cloud("bound", template);
+        final CapacityTracker capacity = CapacityTracker.of(cloud);
+
+        final CapacityTracker.Reservation reservation = capacity.reserve(cloud, template);
+        assertNotNull(reservation);
+        reservation.bind("app_1");
+        // provisioning code always cancels in a finally block
+        reservation.cancel();
+        assertEquals(1, capacity.getInstances("bound"));
+        capacity.provisioned("bound");
+        assertEquals(0, capacity.getProvisioning("bound"));
+
+        capacity.release("app_1");
+        capacity.release("app_1");
+        assertEquals(0, capacity.getInstances("bound"));
+        assertEquals(0, capacity.getTotal());
+    }
+
+    @Test
+    public void countsExistingAgents() throws Exception {
+        final AgentTemplate template = new AgentTemplate("existing", "existing");
+        final CleverCloud cloud = cloud("existing", template);
+        j.jenkins.addNode(new CleverAgent(cloud.name, "existing", "agent-0", "orga", "app_0", "/home/jenkins",
+                "existing", RetentionStrategy.NOOP));
+
+        final CapacityTracker capacity = CapacityTracker.of(cloud);
+        assertEquals(1, capacity.getInstances("existing"));
+        assertEquals(1, capacity.getTotal());
+        capacity.release("app_0");
+        assertEquals(0, capacity.getTotal());
+    }
+
+    private CleverCloud cloud(String name, AgentTemplate template) {
+        final CleverCloud cloud = new CleverCloud(name, "credentials", "orga", Collections.singletonList(template));
+        j.jenkins.clouds.add(cloud);
+        return cloud;
+    }
+}
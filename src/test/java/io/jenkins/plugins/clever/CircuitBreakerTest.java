@@ -0,0 +1,75 @@
+package io.jenkins.plugins.clever;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private static final long COOLDOWN = 50;
+
+    @Test
+    public void opensAfterThreshold() {
+        final CircuitBreaker breaker = new CircuitBreaker("threshold", 3, TimeUnit.MINUTES.toMillis(1));
+        breaker.failure();
+        breaker.failure();
+        assertTrue(breaker.allowsRequests());
+        breaker.failure();
+        assertFalse(breaker.allowsRequests());
+        assertFalse(breaker.acquire());
+    }
+
+    @Test
+    public void successResetsFailures() {
+        final CircuitBreaker breaker = new CircuitBreaker("reset", 2, TimeUnit.MINUTES.toMillis(1));
+        breaker.failure();
+        breaker.success();
+        breaker.failure();
+        assertTrue(breaker.allowsRequests());
+    }
+
+    @Test
+    public void halfOpenAllowsSingleTrialRequest() throws InterruptedException {
+        final CircuitBreaker breaker = open();
+        assertTrue(breaker.allowsRequests());
+        assertTrue(breaker.acquire());
+        assertFalse("trial request is in flight", breaker.acquire());
+        assertFalse(breaker.allowsRequests());
+
+        breaker.success();
+        assertTrue(breaker.acquire());
+        assertTrue(breaker.acquire());
+    }
+
+    @Test
+    public void failedTrialReopens() throws InterruptedException {
+        final CircuitBreaker breaker = open();
+        assertTrue(breaker.acquire());
+        breaker.failure();
+        assertFalse(breaker.allowsRequests());
+        assertFalse(breaker.acquire());
+
+        Thread.sleep(COOLDOWN * 2);
+        assertTrue("cooldown is over again", breaker.acquire());
+    }
+
+    @Test
+    public void releasedTrialLetsAnotherOneThrough() throws InterruptedException {
+        final CircuitBreaker breaker = open();
+        assertTrue(breaker.acquire());
+        breaker.release();
+        assertTrue(breaker.acquire());
+        assertFalse(breaker.acquire());
+    }
+
+    private static CircuitBreaker open() throws InterruptedException {
+        final CircuitBreaker breaker = new CircuitBreaker("half-open", 1, COOLDOWN);
+        breaker.failure();
+        assertFalse(breaker.acquire());
+        Thread.sleep(COOLDOWN * 2);
+        return breaker;
+    }
+}
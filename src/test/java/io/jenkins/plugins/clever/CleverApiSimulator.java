@@ -0,0 +1,562 @@
+package io.jenkins.plugins.clever;
+
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import com.squareup.okhttp.mockwebserver.SocketPolicy;
+import com.squareup.okhttp.ws.WebSocket;
+import com.squareup.okhttp.ws.WebSocketListener;
+import jenkins.model.Jenkins;
+import okio.Buffer;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.transport.PacketLineOut;
+import org.eclipse.jgit.transport.ReceivePack;
+import org.eclipse.jgit.transport.RefAdvertiser;
+
+import javax.annotation.CheckForNull;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * In-process stand-in for Clever Cloud API, so we can load-test provisioning without creating real applications.
+ * <p>
+ * Implements the endpoints the plugin relies on: self and organisations, products catalog, applications, environment,
+ * deployments, events websocket, and the git endpoint applications are deployed from. Each operation can be given
+ * a latency distribution and an error rate, and the organisation an applications quota. Deployment starts when
+ * deploy commit is pushed and completes after a configurable duration, reported on events socket.
+ */
+public class CleverApiSimulator extends Dispatcher implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(CleverApiSimulator.class.getName());
+
+    static final String ORGANISATION = "orga_simulator";
+
+    enum Operation {
+        SELF, ORGANISATIONS, INSTANCES, ZONES, LIST_APPLICATIONS, CREATE_APPLICATION, DELETE_APPLICATION, SET_ENV,
+        DEPLOYMENTS, EVENTS, GIT
+    }
+
+    /**
+     * Log-normal latency distribution, which is a fair approximation of remote calls response time.
+     */
+    static final class Latency {
+        static final Latency NONE = new Latency(0, 0);
+
+        final long medianMillis;
+        final double sigma;
+
+        Latency(long medianMillis, double sigma) {
+            this.medianMillis = medianMillis;
+            this.sigma = sigma;
+        }
+
+        long sample() {
+            if (medianMillis <= 0) return 0;
+            return (long) (medianMillis * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+        }
+    }
+
+    private final MockWebServer server = new MockWebServer();
+
+    private final Map<Operation, Latency> latencies = new EnumMap<>(Operation.class);
+
+    private final Map<Operation, Double> errorRates = new EnumMap<>(Operation.class);
+
+    private final Map<Operation, AtomicLong> calls = new EnumMap<>(Operation.class);
+
+    private final Map<Operation, AtomicLong> faults = new EnumMap<>(Operation.class);
+
+    private final ConcurrentMap<String, App> applications = new ConcurrentHashMap<>();
+
+    private final Set<WebSocket> sockets = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService deployer = Executors.newSingleThreadScheduledExecutor();
+
+    private final AtomicInteger ids = new AtomicInteger();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    private volatile int quota = Integer.MAX_VALUE;
+
+    private volatile Latency deployDuration = Latency.NONE;
+
+    private volatile double deployFailureRate;
+
+    public CleverApiSimulator() {
+        for (Operation op : Operation.values()) {
+            latencies.put(op, Latency.NONE);
+            errorRates.put(op, 0d);
+            calls.put(op, new AtomicLong());
+            faults.put(op, new AtomicLong());
+        }
+    }
+
+    CleverApiSimulator latency(Operation op, long medianMillis, double sigma) {
+        latencies.put(op, new Latency(medianMillis, sigma));
+        return this;
+    }
+
+    /**
+     * Set latency for all operations.
+     */
+    CleverApiSimulator latency(long medianMillis, double sigma) {
+        for (Operation op : Operation.values()) latency(op, medianMillis, sigma);
+        return this;
+    }
+
+    CleverApiSimulator errorRate(Operation op, double rate) {
+        errorRates.put(op, rate);
+        return this;
+    }
+
+    /**
+     * Set error rate for all operations but events socket, which plugin can live without.
+     */
+    CleverApiSimulator errorRate(double rate) {
+        for (Operation op : Operation.values()) {
+            if (op != Operation.EVENTS) errorRate(op, rate);
+        }
+        return this;
+    }
+
+    /**
+     * Max number of applications in organisation.
+     */
+    CleverApiSimulator quota(int quota) {
+        this.quota = quota;
+        return this;
+    }
+
+    CleverApiSimulator deployment(long medianMillis, double sigma, double failureRate) {
+        this.deployDuration = new Latency(medianMillis, sigma);
+        this.deployFailureRate = failureRate;
+        return this;
+    }
+
+    /**
+     * Start server and have the plugin use it as Clever Cloud API.
+     */
+    CleverApiSimulator start() throws IOException {
+        server.setDispatcher(this);
+        server.start();
+        ApiClients.apiUrl = getApiUrl();
+        ApiClients.invalidateAll();
+        return this;
+    }
+
+    String getApiUrl() {
+        return server.url("/v2").toString();
+    }
+
+    int getApplications() {
+        return applications.size();
+    }
+
+    long getCalls(Operation op) {
+        return calls.get(op).get();
+    }
+
+    long getFaults(Operation op) {
+        return faults.get(op).get();
+    }
+
+    /**
+     * Max number of requests handled concurrently so far.
+     */
+    int getPeakConcurrency() {
+        return peakInFlight.get();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder b = new StringBuilder("applications=").append(applications.size())
+                .append(" peakConcurrency=").append(peakInFlight.get());
+        for (Operation op : Operation.values()) {
+            b.append(' ').append(op).append('=').append(calls.get(op)).append('/').append(faults.get(op));
+        }
+        return b.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        ApiClients.apiUrl = null;
+        ApiClients.invalidateAll();
+        deployer.shutdownNow();
+        server.shutdown();
+    }
+
+    /**
+     * Register credentials for this simulator and a cloud using them.
+     */
+    CleverCloud createCloud(String name, AgentTemplate... templates) throws IOException {
+        final CleverAPICredentials credentials = new CleverAPICredentials(name + "-credentials", null, "token", "secret", "consumerKey", "consumerSecret");
+        SystemCredentialsProvider.getInstance().getCredentials().add(credentials);
+        SystemCredentialsProvider.getInstance().save();
+        final CleverCloud cloud = new CleverCloud(name, credentials.getId(), ORGANISATION, Arrays.asList(templates));
+        Jenkins.getInstance().clouds.add(cloud);
+        return cloud;
+    }
+
+    /**
+     * Create an application, as if it had been created through API.
+     */
+    String createApplication() {
+        return createApplication(null, System.currentTimeMillis());
+    }
+
+    String createApplication(@CheckForNull String description, @CheckForNull Long creationDate) {
+        final App app = new App("app_" + ids.incrementAndGet(), null, description, "par");
+        app.creationDate = creationDate;
+        applications.put(app.id, app);
+        return app.id;
+    }
+
+    boolean hasApplication(String applicationId) {
+        return applications.containsKey(applicationId);
+    }
+
+    /**
+     * Start deployment of an application, as if deploy commit had been pushed.
+     */
+    void deploy(String applicationId) {
+        deploy(applications.get(applicationId));
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        final String method = request.getMethod();
+        String path = request.getPath();
+        final int q = path.indexOf('?');
+        if (q >= 0) path = path.substring(0, q);
+        final String[] s = path.substring(1).split("/");
+
+        final Operation op = route(method, s);
+        if (op == null) {
+            return error(404, "Not found: " + method + " " + path);
+        }
+
+        calls.get(op).incrementAndGet();
+        final int n = inFlight.incrementAndGet();
+        peakInFlight.accumulateAndGet(n, Math::max);
+        try {
+            final long latency = latencies.get(op).sample();
+            if (latency > 0) Thread.sleep(latency);
+
+            if (ThreadLocalRandom.current().nextDouble() < errorRates.get(op)) {
+                faults.get(op).incrementAndGet();
+                return fault();
+            }
+            return handle(op, request, s);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Simulator failed to handle " + method + " " + path, e);
+            return error(500, e.toString());
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static Operation route(String method, String[] s) {
+        if (s.length == 3 && s[0].equals("git") && s[1].endsWith(".git")) {
+            return Operation.GIT; // git/{appId}.git/git-receive-pack
+        }
+        if (s.length == 4 && s[0].equals("git") && s[2].equals("info") && s[3].equals("refs")) {
+            return Operation.GIT; // git/{appId}.git/info/refs
+        }
+        if (s.length < 2 || !s[0].equals("v2")) return null;
+        switch (s.length) {
+            case 2:
+                if (s[1].equals("self")) return Operation.SELF;
+                if (s[1].equals("organisations")) return Operation.ORGANISATIONS;
+                return null;
+            case 3:
+                if (s[1].equals("products") && s[2].equals("instances")) return Operation.INSTANCES;
+                if (s[1].equals("products") && s[2].equals("zones")) return Operation.ZONES;
+                if (s[1].equals("events") && s[2].equals("event-socket")) return Operation.EVENTS;
+                return null;
+            case 4:
+                if (!s[1].equals("organisations") || !s[3].equals("applications")) return null;
+                return method.equals("POST") ? Operation.CREATE_APPLICATION : Operation.LIST_APPLICATIONS;
+            case 5:
+                return s[1].equals("organisations") && method.equals("DELETE") ? Operation.DELETE_APPLICATION : null;
+            case 6:
+                if (!s[1].equals("organisations")) return null;
+                if (s[5].equals("env")) return Operation.SET_ENV;
+                if (s[5].equals("deployments")) return Operation.DEPLOYMENTS;
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private MockResponse handle(Operation op, RecordedRequest request, String[] s) throws IOException {
+        switch (op) {
+            case SELF:
+                final JsonObject self = new JsonObject();
+                self.addProperty("id", "user_simulator");
+                self.addProperty("name", "Simulator");
+                return json(self);
+            case ORGANISATIONS:
+                final JsonObject orga = new JsonObject();
+                orga.addProperty("id", ORGANISATION);
+                orga.addProperty("name", "Simulator");
+                final JsonArray orgas = new JsonArray();
+                orgas.add(orga);
+                return json(orgas);
+            case INSTANCES:
+                return json(instances());
+            case ZONES:
+                final JsonArray zones = new JsonArray();
+                for (String name : new String[]{"par", "mtl"}) {
+                    final JsonObject zone = new JsonObject();
+                    zone.addProperty("name", name);
+                    zones.add(zone);
+                }
+                return json(zones);
+            case LIST_APPLICATIONS:
+                final JsonArray apps = new JsonArray();
+                for (App app : applications.values()) apps.add(app.toJson());
+                return json(apps);
+            case CREATE_APPLICATION:
+                return create(request);
+            case DELETE_APPLICATION:
+                return applications.remove(s[4]) != null ? json(new JsonObject()) : error(404, "Application not found");
+            case SET_ENV:
+                return applications.containsKey(s[4]) ? json(new JsonObject()) : error(404, "Application not found");
+            case DEPLOYMENTS:
+                final App app = applications.get(s[4]);
+                if (app == null) return error(404, "Application not found");
+                final JsonArray deployments = new JsonArray();
+                if (app.state != null) {
+                    final JsonObject deployment = new JsonObject();
+                    deployment.addProperty("state", app.state);
+                    deployments.add(deployment);
+                }
+                return json(deployments);
+            case EVENTS:
+                return new MockResponse().withWebSocketUpgrade(new EventsListener());
+            case GIT:
+                return git(request, s);
+            default:
+                return error(404, "Not found");
+        }
+    }
+
+    private static JsonArray instances() {
+        final JsonObject variant = new JsonObject();
+        variant.addProperty("id", "docker");
+        variant.addProperty("slug", "docker");
+        variant.addProperty("name", "Docker");
+        variant.addProperty("deployType", "docker");
+        variant.addProperty("logo", "");
+
+        final JsonArray flavors = new JsonArray();
+        final String[] names = {"XS", "S", "M", "L", "XL"};
+        for (int i = 0; i < names.length; i++) {
+            final JsonObject flavor = new JsonObject();
+            flavor.addProperty("name", names[i]);
+            flavor.addProperty("cpus", 1 << i);
+            flavor.addProperty("mem", 1024 << i);
+            flavor.addProperty("available", true);
+            flavors.add(flavor);
+        }
+
+        final JsonObject docker = new JsonObject();
+        docker.addProperty("type", "docker");
+        docker.addProperty("version", "20180101");
+        docker.addProperty("enabled", true);
+        docker.add("variant", variant);
+        docker.add("flavors", flavors);
+        final JsonArray instances = new JsonArray();
+        instances.add(docker);
+        return instances;
+    }
+
+    private MockResponse create(RecordedRequest request) {
+        // not atomic, quota is a soft limit
+        if (applications.size() >= quota) {
+            return error(403, "Applications quota exceeded");
+        }
+        final JsonObject wannabe = new JsonParser().parse(request.getBody().readUtf8()).getAsJsonObject();
+        final App app = new App("app_" + ids.incrementAndGet(),
+                wannabe.has("name") ? wannabe.get("name").getAsString() : null,
+                wannabe.has("description") ? wannabe.get("description").getAsString() : null,
+                wannabe.has("zone") ? wannabe.get("zone").getAsString() : "par");
+        applications.put(app.id, app);
+        return json(app.toJson());
+    }
+
+    /**
+     * Git smart HTTP protocol, push only.
+     */
+    private MockResponse git(RecordedRequest request, String[] s) throws IOException {
+        final String id = s[1].substring(0, s[1].length() - ".git".length());
+        final App app = applications.get(id);
+        if (app == null) return error(404, "Repository not found");
+
+        final ReceivePack rp = new ReceivePack(app.repository);
+        rp.setBiDirectionalPipe(false);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        if (request.getMethod().equals("GET")) {
+            final PacketLineOut pck = new PacketLineOut(out);
+            pck.writeString("# service=git-receive-pack\n");
+            pck.end();
+            rp.sendAdvertisedRefs(new RefAdvertiser.PacketLineOutRefAdvertiser(pck));
+            return new MockResponse()
+                    .setHeader("Content-Type", "application/x-git-receive-pack-advertisement")
+                    .setBody(new Buffer().write(out.toByteArray()));
+        }
+
+        InputStream in = request.getBody().inputStream();
+        if ("gzip".equals(request.getHeader("Content-Encoding"))) {
+            in = new GZIPInputStream(in);
+        }
+        rp.receive(in, out, null);
+        deploy(app);
+        return new MockResponse()
+                .setHeader("Content-Type", "application/x-git-receive-pack-result")
+                .setBody(new Buffer().write(out.toByteArray()));
+    }
+
+    private void deploy(App app) {
+        app.state = "WIP";
+        deployer.schedule(() -> {
+            if (!applications.containsKey(app.id)) return;
+            app.state = ThreadLocalRandom.current().nextDouble() < deployFailureRate ? "FAIL" : "OK";
+
+            final JsonObject data = new JsonObject();
+            data.addProperty("appId", app.id);
+            data.addProperty("state", app.state);
+            final JsonObject event = new JsonObject();
+            event.addProperty("type", "DEPLOYMENT_ACTION_END");
+            event.add("data", data);
+            final String message = event.toString();
+            for (WebSocket socket : sockets) {
+                try {
+                    synchronized (socket) {
+                        socket.sendMessage(RequestBody.create(WebSocket.TEXT, message));
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    sockets.remove(socket);
+                }
+            }
+        }, deployDuration.sample(), TimeUnit.MILLISECONDS);
+    }
+
+    private MockResponse fault() {
+        switch (ThreadLocalRandom.current().nextInt(4)) {
+            case 0:
+                return error(500, "Internal server error");
+            case 1:
+                return error(503, "Service unavailable").setHeader("Retry-After", "1");
+            case 2:
+                return error(429, "Too many requests").setHeader("Retry-After", "1");
+            default:
+                return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START);
+        }
+    }
+
+    private static MockResponse json(Object body) {
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody(body.toString());
+    }
+
+    private static MockResponse error(int code, String message) {
+        final JsonObject body = new JsonObject();
+        body.addProperty("id", code);
+        body.addProperty("message", message);
+        body.addProperty("type", "error");
+        return json(body).setResponseCode(code);
+    }
+
+    private final class App {
+        final String id;
+        final String name;
+        final String description;
+        final String zone;
+        volatile Long creationDate = System.currentTimeMillis();
+        final InMemoryRepository repository;
+        volatile String state;
+
+        App(String id, String name, String description, String zone) {
+            this.id = id;
+            this.name = name;
+            this.description = description;
+            this.zone = zone;
+            this.repository = new InMemoryRepository(new DfsRepositoryDescription(id));
+        }
+
+        JsonObject toJson() {
+            final JsonObject deployment = new JsonObject();
+            deployment.addProperty("type", "GIT");
+            deployment.addProperty("httpUrl", server.url("/git/" + id + ".git").toString());
+            final JsonObject json = new JsonObject();
+            json.addProperty("id", id);
+            json.addProperty("name", name);
+            json.addProperty("description", description);
+            json.addProperty("zone", zone);
+            json.addProperty("creationDate", creationDate);
+            json.addProperty("state", "SHOULD_BE_UP");
+            json.add("deployment", deployment);
+            return json;
+        }
+    }
+
+    private final class EventsListener implements WebSocketListener {
+        private WebSocket socket;
+
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            socket = webSocket;
+            sockets.add(webSocket);
+        }
+
+        @Override
+        public void onMessage(ResponseBody message) throws IOException {
+            message.close(); // authentication message
+        }
+
+        @Override
+        public void onPong(Buffer payload) {
+        }
+
+        @Override
+        public void onClose(int code, String reason) {
+            if (socket != null) sockets.remove(socket);
+        }
+
+        @Override
+        public void onFailure(IOException e, Response response) {
+            if (socket != null) sockets.remove(socket);
+        }
+    }
+}
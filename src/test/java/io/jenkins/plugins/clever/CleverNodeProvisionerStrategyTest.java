@@ -0,0 +1,133 @@
+package io.jenkins.plugins.clever;
+
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.slaves.Cloud;
+import hudson.slaves.NodeProvisioner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class CleverNodeProvisionerStrategyTest {
+
+    private static final String LABEL = "clever-spread";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private CleverApiSimulator simulator;
+
+    private final List<NodeProvisioner.PlannedNode> launches = new ArrayList<>();
+
+    @Before
+    public void startSimulator() throws IOException {
+        // agents never get deployed, so planned nodes don't complete while we check them
+        simulator = new CleverApiSimulator().deployment(TimeUnit.HOURS.toMillis(1), 0, 0).start();
+    }
+
+    @After
+    public void stopSimulator() throws IOException {
+        simulator.close();
+    }
+
+    @Test
+    public void sharesAreSpreadWithinRemainingCapacity() throws Exception {
+        final CleverCloud a = cloud("spread-a", 0);
+        final CleverCloud b = cloud("spread-b", 1);
+
+        assertEquals(4, provision(Arrays.asList(a, b), 4));
+        assertEquals(4, launches.size());
+        assertEquals(3, CapacityTracker.of(a).getProvisioning("spread"));
+        assertEquals(1, CapacityTracker.of(b).getProvisioning("spread"));
+    }
+
+    @Test
+    public void agentsBeingProvisionedAreOnlyAccountedForOnce() throws Exception {
+        final CleverCloud cloud = cloud("spread-in-flight", 0);
+        // already planned by a previous round, so not part of the excess workload the strategy asks for
+        assertNotNull(CapacityTracker.of(cloud).reserve(cloud, cloud.getTemplates().get(0)));
+        assertNotNull(CapacityTracker.of(cloud).reserve(cloud, cloud.getTemplates().get(0)));
+
+        assertEquals(3, provision(Arrays.asList(cloud), 3));
+        assertEquals(5, CapacityTracker.of(cloud).getProvisioning("spread"));
+    }
+
+    @Test
+    public void otherCloudConfiguredFirstKeepsPrecedence() throws Exception {
+        final OtherCloud other = new OtherCloud("other-first");
+        final CleverCloud clever = cloud("spread-second", 0);
+
+        assertEquals(2, provision(Arrays.asList(other, clever), 2));
+        assertEquals(2, other.requested);
+        assertEquals(0, CapacityTracker.of(clever).getProvisioning("spread"));
+    }
+
+    @Test
+    public void cleverCloudsConfiguredFirstGoBeforeOtherOnes() throws Exception {
+        final CleverCloud a = cloud("spread-first", 0);
+        final OtherCloud other = new OtherCloud("other-between");
+        final CleverCloud b = cloud("spread-last", 0);
+
+        assertEquals(2, provision(Arrays.asList(a, other, b), 2));
+        assertEquals("Clever clouds share the workload", 2,
+                CapacityTracker.of(a).getProvisioning("spread") + CapacityTracker.of(b).getProvisioning("spread"));
+        assertEquals(0, other.requested);
+    }
+
+    @Test
+    public void otherCloudTakesOverWhenCleverCloudsAreFull() throws Exception {
+        final CleverCloud full = cloud("spread-full", 1);
+        assertNotNull(CapacityTracker.of(full).reserve(full, full.getTemplates().get(0)));
+        final OtherCloud other = new OtherCloud("other-fallback");
+
+        assertEquals(2, provision(Arrays.asList(full, other), 2));
+        assertEquals(2, other.requested);
+    }
+
+    private int provision(List<Cloud> clouds, int excess) {
+        return CleverNodeProvisionerStrategy.provision(clouds, Label.get(LABEL), excess, launches::addAll);
+    }
+
+    private CleverCloud cloud(String name, int maxInstances) throws Exception {
+        final AgentTemplate template = new AgentTemplate("spread", LABEL);
+        template.setMaxInstances(maxInstances);
+        return simulator.createCloud(name, template);
+    }
+
+    private static final class OtherCloud extends Cloud {
+
+        private int requested;
+
+        OtherCloud(String name) {
+            super(name);
+        }
+
+        @Override
+        public Collection<NodeProvisioner.PlannedNode> provision(Label label, int excessWorkload) {
+            requested += excessWorkload;
+            final List<NodeProvisioner.PlannedNode> planned = new ArrayList<>();
+            for (int i = 0; i < excessWorkload; i++) {
+                planned.add(new NodeProvisioner.PlannedNode(name + "-" + i, new CompletableFuture<Node>(), 1));
+            }
+            return planned;
+        }
+
+        @Override
+        public boolean canProvision(Label label) {
+            return true;
+        }
+    }
+}
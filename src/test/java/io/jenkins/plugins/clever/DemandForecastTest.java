@@ -0,0 +1,56 @@
+package io.jenkins.plugins.clever;
+
+import hudson.model.Label;
+import hudson.model.labels.LabelAtom;
+import hudson.model.labels.LabelExpression;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DemandForecastTest {
+
+    private final Label label = new LabelAtom("linux");
+
+    @Test
+    public void nothingExpectedWithoutHistory() {
+        final DemandForecast forecast = new DemandForecast();
+        assertEquals(0, forecast.forecast(label, "cloud", "template", 0, false).expected);
+    }
+
+    @Test
+    public void expectsArrivalsDuringLeadTime() {
+        final DemandForecast forecast = forecast();
+        final DemandForecast.Forecast f = forecast.forecast(label, "cloud", "template", 0, false);
+        // 30 arrivals over the last 10 minutes, agents take 110s to come online
+        assertEquals(3.0, f.arrivalRate, 0.01);
+        assertEquals(110_000, f.leadTime);
+        assertEquals(5, f.expected);
+    }
+
+    @Test
+    public void busyReusableAgentsTakeNextBuilds() {
+        final DemandForecast forecast = forecast();
+        forecast.completed(label, 110_000);
+        assertEquals(3, forecast.forecast(label, "cloud", "template", 2, true).expected);
+        assertEquals(5, forecast.forecast(label, "cloud", "template", 2, false).expected);
+        assertEquals(0, forecast.forecast(label, "cloud", "template", 10, true).expected);
+    }
+
+    @Test
+    public void leadTimeIsTrackedPerTemplate() {
+        final DemandForecast forecast = forecast();
+        // same label, served by another template we never provisioned
+        assertEquals(0, forecast.forecast(label, "cloud", "other", 0, false).leadTime);
+        // queue item label expression doesn't match template label string
+        final Label expression = new LabelExpression.And(label, new LabelAtom("docker"));
+        for (int i = 0; i < 30; i++) forecast.arrived(expression);
+        assertEquals(110_000, forecast.forecast(expression, "cloud", "template", 0, false).leadTime);
+    }
+
+    private DemandForecast forecast() {
+        final DemandForecast forecast = new DemandForecast();
+        for (int i = 0; i < 30; i++) forecast.arrived(label);
+        forecast.provisioned("cloud", "template", 110_000);
+        return forecast;
+    }
+}
@@ -0,0 +1,38 @@
+package io.jenkins.plugins.clever;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the deploy git repository, and of getting it once cached.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeployPackBenchmark {
+
+    private static final String IMAGE = "jenkins/jnlp-slave";
+
+    @Benchmark
+    public ObjectId create() throws IOException {
+        try (DeployPack pack = new DeployPack(IMAGE)) {
+            return pack.getCommit();
+        }
+    }
+
+    @Benchmark
+    public ObjectId cached() throws IOException {
+        return DeployPack.of(IMAGE).getCommit();
+    }
+}
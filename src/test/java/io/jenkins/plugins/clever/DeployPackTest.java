@@ -0,0 +1,84 @@
+package io.jenkins.plugins.clever;
+
+import org.eclipse.jgit.errors.TransportException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DeployPackTest {
+
+    private static final String BRANCH = Constants.R_HEADS + Constants.MASTER;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void commitOnlyDependsOnImage() throws Exception {
+        try (DeployPack a = new DeployPack("jenkins/jnlp-slave");
+             DeployPack b = new DeployPack("jenkins/jnlp-slave");
+             DeployPack c = new DeployPack("jenkins/jnlp-slave:alpine")) {
+            assertEquals(a.getCommit(), b.getCommit());
+            assertNotEquals(a.getCommit(), c.getCommit());
+        }
+        assertSame(DeployPack.of("jenkins/jnlp-slave"), DeployPack.of("jenkins/jnlp-slave"));
+    }
+
+    @Test
+    public void pushIsIdempotent() throws Exception {
+        final File remote = remote();
+        try (DeployPack pack = new DeployPack("jenkins/jnlp-slave")) {
+            pack.push(remote.getAbsolutePath(), null);
+            pack.push(remote.getAbsolutePath(), null);
+            try (Repository r = new FileRepositoryBuilder().setGitDir(remote).setBare().build()) {
+                assertEquals(pack.getCommit(), r.exactRef(BRANCH).getObjectId());
+            }
+        }
+    }
+
+    @Test
+    public void rejectedPushIsReported() throws Exception {
+        final File remote = remote();
+        // remote can't update branch while someone else holds its lock
+        final File lock = new File(remote, BRANCH + ".lock");
+        Files.createDirectories(lock.getParentFile().toPath());
+        Files.createFile(lock.toPath());
+
+        try (DeployPack pack = new DeployPack("jenkins/jnlp-slave")) {
+            pack.push(remote.getAbsolutePath(), null);
+            fail("push should have been rejected");
+        } catch (DeployPack.PushRejectedException e) {
+            assertFalse("rejection is not worth a retry", Retry.isTransient(e));
+        }
+    }
+
+    @Test
+    public void unreachableRemoteIsTransient() throws Exception {
+        try (DeployPack pack = new DeployPack("jenkins/jnlp-slave")) {
+            pack.push("http://127.0.0.1:1/app.git", null);
+            fail("remote should not be reachable");
+        } catch (TransportException e) {
+            assertTrue(Retry.isTransient(e));
+        }
+    }
+
+    private File remote() throws Exception {
+        final File dir = tmp.newFolder();
+        try (Repository r = new FileRepositoryBuilder().setGitDir(dir).setBare().build()) {
+            r.create(true);
+        }
+        return dir;
+    }
+}
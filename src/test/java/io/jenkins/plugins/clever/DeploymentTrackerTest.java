@@ -0,0 +1,114 @@
+package io.jenkins.plugins.clever;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DeploymentTrackerTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private CleverApiSimulator simulator;
+
+    private long timeout;
+
+    private long pollPeriod;
+
+    @Before
+    public void speedUp() {
+        timeout = DeploymentTracker.timeout;
+        pollPeriod = DeploymentTracker.pollPeriod;
+        DeploymentTracker.pollPeriod = 100;
+    }
+
+    @After
+    public void restore() throws IOException {
+        DeploymentTracker.timeout = timeout;
+        DeploymentTracker.pollPeriod = pollPeriod;
+        if (simulator != null) simulator.close();
+    }
+
+    @Test
+    public void eventsReportDeployment() throws Exception {
+        simulator = new CleverApiSimulator().deployment(100, 0, 0).start();
+        final DeploymentTracker tracker = DeploymentTracker.of(simulator.createCloud("tracker-events"));
+
+        final String app = simulator.createApplication();
+        final CompletableFuture<Void> deployment = tracker.track(app);
+        simulator.deploy(app);
+        deployment.get(30, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void pollsWhileEventsAreUnavailable() throws Exception {
+        simulator = new CleverApiSimulator()
+                .errorRate(CleverApiSimulator.Operation.EVENTS, 1)
+                .deployment(100, 0, 0)
+                .start();
+        final DeploymentTracker tracker = DeploymentTracker.of(simulator.createCloud("tracker-polling"));
+
+        final String app = simulator.createApplication();
+        final CompletableFuture<Void> deployment = tracker.track(app);
+        simulator.deploy(app);
+        deployment.get(30, TimeUnit.SECONDS);
+        assertTrue(simulator.getCalls(CleverApiSimulator.Operation.DEPLOYMENTS) > 0);
+    }
+
+    @Test
+    public void pollingReportsFailedDeployment() throws Exception {
+        simulator = new CleverApiSimulator()
+                .errorRate(CleverApiSimulator.Operation.EVENTS, 1)
+                .deployment(100, 0, 1)
+                .start();
+        final DeploymentTracker tracker = DeploymentTracker.of(simulator.createCloud("tracker-failure"));
+
+        final String app = simulator.createApplication();
+        final CompletableFuture<Void> deployment = tracker.track(app);
+        simulator.deploy(app);
+        assertFailed(deployment, "FAIL");
+    }
+
+    @Test
+    public void deploymentTimesOut() throws Exception {
+        DeploymentTracker.timeout = 500;
+        simulator = new CleverApiSimulator().start();
+        final DeploymentTracker tracker = DeploymentTracker.of(simulator.createCloud("tracker-timeout"));
+
+        // deploy commit never gets pushed
+        final CompletableFuture<Void> deployment = tracker.track(simulator.createApplication());
+        assertFailed(deployment, "timeout");
+    }
+
+    @Test
+    public void connectedAgentCompletesDeployment() throws Exception {
+        simulator = new CleverApiSimulator().start();
+        final DeploymentTracker tracker = DeploymentTracker.of(simulator.createCloud("tracker-ready"));
+
+        final String app = simulator.createApplication();
+        final CompletableFuture<Void> deployment = tracker.track(app);
+        tracker.ready(app);
+        assertTrue(deployment.isDone());
+        assertEquals(null, deployment.get());
+    }
+
+    private static void assertFailed(CompletableFuture<Void> deployment, String reason) throws Exception {
+        try {
+            deployment.get(30, TimeUnit.SECONDS);
+            fail("deployment should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().getMessage(), e.getCause().getMessage().endsWith(": " + reason));
+        }
+    }
+}
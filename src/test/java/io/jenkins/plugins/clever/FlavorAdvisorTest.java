@@ -0,0 +1,151 @@
+package io.jenkins.plugins.clever;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.Queue;
+import io.jenkins.plugins.clever.api.Flavor;
+import jenkins.model.NodeListener;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlavorAdvisorTest {
+
+    private static final long GB = 1024L * 1024 * 1024;
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private CleverApiSimulator simulator;
+
+    @After
+    public void stopSimulator() throws IOException {
+        if (simulator != null) simulator.close();
+    }
+
+    @Test
+    public void buildIsChargedForCpuUsedSinceItStarted() {
+        // reusable agent, which has already spent 100s of CPU on previous builds
+        final FlavorAdvisor.BuildUsage u = new FlavorAdvisor.BuildUsage(
+                new long[]{2 * GB, 100 * SECOND}, new long[]{2 * GB, 130 * SECOND}, 30000, flavor("M", 4, 4096));
+        assertEquals(1.0, u.getCpu(), 0.001);
+    }
+
+    @Test
+    public void peakIsBuildOwnOnlyIfItRaisedIt() {
+        final Flavor m = flavor("M", 4, 4096);
+        final FlavorAdvisor.BuildUsage raised = new FlavorAdvisor.BuildUsage(
+                new long[]{GB, 0}, new long[]{3 * GB, SECOND}, 1000, m);
+        assertTrue(raised.isPeak());
+        assertEquals(3072, raised.getMemory(), 0.001);
+
+        final FlavorAdvisor.BuildUsage below = new FlavorAdvisor.BuildUsage(
+                new long[]{3 * GB, 0}, new long[]{3 * GB, SECOND}, 1000, m);
+        assertFalse(below.isPeak());
+        assertEquals("upper bound", 3072, below.getMemory(), 0.001);
+    }
+
+    @Test
+    public void buildShortOnMemoryAsksForMore() {
+        final FlavorAdvisor.BuildUsage u = new FlavorAdvisor.BuildUsage(
+                new long[]{0, 0}, new long[]{1000L * 1024 * 1024, SECOND}, 1000, flavor("XS", 1, 1024));
+        assertEquals(1024 * 1.25, u.getMemory(), 0.001);
+    }
+
+    @Test
+    public void buildBelowPreviousPeakDoesNotInheritIt() {
+        final List<Flavor> range = range();
+        final Flavor xl = range.get(4);
+        final FlavorAdvisor.JobHistory h = new FlavorAdvisor.JobHistory();
+        h.record(new FlavorAdvisor.BuildUsage(new long[]{0, 0}, new long[]{GB, SECOND}, 2000, xl), 2000);
+        assertEquals("S", h.pick(range));
+
+        // reusable agent previously ran another job which peaked at 6GB
+        h.record(new FlavorAdvisor.BuildUsage(new long[]{6 * GB, 100 * SECOND}, new long[]{6 * GB, 101 * SECOND}, 2000, xl), 2000);
+        assertEquals("S", h.pick(range));
+
+        // while a build which did raise the peak is taken into account
+        h.record(new FlavorAdvisor.BuildUsage(new long[]{GB, 0}, new long[]{3 * GB, SECOND}, 2000, xl), 2000);
+        assertEquals("M", h.pick(range));
+    }
+
+    @Test
+    public void agentIsReservedBeforeItIsAdded() throws Exception {
+        simulator = new CleverApiSimulator().start();
+        final AgentTemplate template = new AgentTemplate("sized", "clever-sized");
+        template.setMinScaler("XS");
+        template.setMaxScaler("M");
+        final CleverCloud cloud = simulator.createCloud("flavor-reserved", template);
+
+        final FreeStyleProject p = j.createFreeStyleProject();
+        p.setAssignedLabel(Label.get("clever-sized"));
+        p.scheduleBuild2(0);
+        final Queue.Item item = awaitBuildable(p);
+        try {
+            cloud.provision(Label.get("clever-sized"), 1);
+            final long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+            while (!ReservedAtCreation.reserved.contains(item.getId())) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new AssertionError("no agent reserved for build when added: " + ReservedAtCreation.reserved);
+                }
+                Thread.sleep(100);
+            }
+        } finally {
+            j.jenkins.getQueue().cancel(item);
+        }
+    }
+
+    private Queue.Item awaitBuildable(FreeStyleProject p) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+        while (true) {
+            final Queue.Item item = p.getQueueItem();
+            if (item instanceof Queue.BuildableItem) return item;
+            if (System.currentTimeMillis() > deadline) throw new AssertionError("build never got buildable");
+            Thread.sleep(100);
+        }
+    }
+
+    @TestExtension("agentIsReservedBeforeItIsAdded")
+    public static class ReservedAtCreation extends NodeListener {
+
+        static final List<Long> reserved = new CopyOnWriteArrayList<>();
+
+        @Override
+        protected void onCreated(@Nonnull Node node) {
+            if (node instanceof CleverAgent) reserved.add(((CleverAgent) node).getReservedFor());
+        }
+    }
+
+    private static List<Flavor> range() {
+        final List<Flavor> range = new ArrayList<>();
+        final String[] names = {"XS", "S", "M", "L", "XL"};
+        for (int i = 0; i < names.length; i++) {
+            range.add(flavor(names[i], 1 << i, 1024 << i));
+        }
+        return range;
+    }
+
+    private static Flavor flavor(String name, int cpus, int mem) {
+        final Flavor f = new Flavor();
+        f.setName(name);
+        f.setCpus(cpus);
+        f.setMem(mem);
+        return f;
+    }
+}
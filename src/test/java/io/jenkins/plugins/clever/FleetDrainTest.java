@@ -0,0 +1,117 @@
+package io.jenkins.plugins.clever;
+
+import hudson.ExtensionList;
+import hudson.slaves.RetentionStrategy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+public class FleetDrainTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private CleverApiSimulator simulator;
+
+    private CleverCloud cloud;
+
+    private FleetDrain.QuietDown quietDown;
+
+    @Before
+    public void setUp() throws Exception {
+        simulator = new CleverApiSimulator().start();
+        cloud = simulator.createCloud("drain");
+        quietDown = ExtensionList.lookup(FleetDrain.QuietDown.class).get(FleetDrain.QuietDown.class);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        j.jenkins.doCancelQuietDown();
+        simulator.close();
+    }
+
+    @Test
+    public void quietDownStopsIdleAgents() throws Exception {
+        final CleverAgent agent = agent("drain-idle");
+        AgentRegistry.get().setState(agent.getApplicationId(), AgentRegistry.State.ONLINE);
+
+        quietDown.doRun();
+        awaitRemoved(agent);
+        awaitDeleted(agent);
+    }
+
+    @Test
+    public void quietDownLetsProvisioningAgentsConnect() throws Exception {
+        final CleverAgent agent = agent("drain-provisioning");
+
+        quietDown.doRun();
+        quietDown.doRun();
+        assertNotNull("agent being provisioned was stopped", j.jenkins.getNode(agent.getNodeName()));
+        assertEquals(1, simulator.getApplications());
+
+        // connected, and still idle
+        AgentRegistry.get().setState(agent.getApplicationId(), AgentRegistry.State.ONLINE);
+        quietDown.doRun();
+        awaitRemoved(agent);
+        awaitDeleted(agent);
+    }
+
+    @Test
+    public void repeatedRunsStopAgentOnce() throws Exception {
+        final CleverAgent agent = agent("drain-repeated");
+        AgentRegistry.get().setState(agent.getApplicationId(), AgentRegistry.State.ONLINE);
+
+        quietDown.doRun();
+        quietDown.doRun();
+        awaitRemoved(agent);
+        awaitDeleted(agent);
+        assertEquals(1, simulator.getCalls(CleverApiSimulator.Operation.DELETE_APPLICATION));
+    }
+
+    @Test
+    public void shutdownDrainRunsOnce() throws Exception {
+        final CleverAgent agent = agent("drain-shutdown");
+        FleetDrain.shutdown();
+        awaitDeleted(agent);
+
+        // a second drain doesn't go through registry again
+        AgentRegistry.get().register("app_drain-late", "drain-late", cloud.name, "template", CleverApiSimulator.ORGANISATION, "par");
+        FleetDrain.shutdown();
+        assertNotNull(AgentRegistry.get().get("app_drain-late"));
+    }
+
+    private CleverAgent agent(String name) throws Exception {
+        final String application = simulator.createApplication(cloud.getApplicationTag(), System.currentTimeMillis());
+        AgentRegistry.get().register(application, name, cloud.name, "template", CleverApiSimulator.ORGANISATION, "par");
+        final CleverAgent agent = new CleverAgent(cloud.name, "template", name, CleverApiSimulator.ORGANISATION,
+                application, "/home/jenkins", "drain", RetentionStrategy.NOOP);
+        j.jenkins.addNode(agent);
+        j.jenkins.doQuietDown();
+        return agent;
+    }
+
+    private void awaitRemoved(CleverAgent agent) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (j.jenkins.getNode(agent.getNodeName()) != null) {
+            if (System.currentTimeMillis() > deadline) fail(agent.getNodeName() + " was not stopped");
+            Thread.sleep(100);
+        }
+    }
+
+    private void awaitDeleted(CleverAgent agent) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (simulator.hasApplication(agent.getApplicationId())) {
+            if (System.currentTimeMillis() > deadline) fail(agent.getApplicationId() + " was not deleted");
+            Thread.sleep(100);
+        }
+    }
+}
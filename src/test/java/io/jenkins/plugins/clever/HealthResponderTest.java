@@ -0,0 +1,126 @@
+package io.jenkins.plugins.clever;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HealthResponderTest {
+
+    private final Object channel = new Object();
+
+    private final Object reconnected = new Object();
+
+    @After
+    public void stopResponder() {
+        HealthResponder.closed(channel);
+        HealthResponder.closed(reconnected);
+    }
+
+    @Test
+    public void reportsExecutorState() throws Exception {
+        final HealthResponder responder = HealthResponder.getOrStart(0, channel);
+        final int port = responder.getPort();
+        assertTrue(port > 0);
+        assertEquals(200, get(port, "/"));
+        assertEquals(200, get(port, "/ready"));
+
+        HealthResponder.setBusy(true);
+        assertEquals(200, get(port, "/"));
+        assertEquals(503, get(port, "/ready"));
+    }
+
+    @Test
+    public void closingPreviousChannelDoesNotStopResponder() throws Exception {
+        final HealthResponder responder = HealthResponder.getOrStart(0, channel);
+        assertSame(responder, HealthResponder.getOrStart(0, reconnected));
+
+        HealthResponder.closed(channel);
+        assertEquals(200, get(responder.getPort(), "/"));
+
+        HealthResponder.closed(reconnected);
+        assertStopped(responder.getPort());
+    }
+
+    @Test
+    public void restartsOnSamePortRightAfterStop() throws Exception {
+        final HealthResponder responder = HealthResponder.getOrStart(0, channel);
+        final int port = responder.getPort();
+        HealthResponder.closed(channel);
+
+        // previous responder may still be closing its socket
+        final HealthResponder restarted = HealthResponder.getOrStart(port, reconnected);
+        assertNotSame(responder, restarted);
+        assertEquals(port, restarted.getPort());
+        assertEquals(200, get(port, "/"));
+    }
+
+    @Test
+    public void concurrentStartsShareResponder() throws Exception {
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<HealthResponder>> responders = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                responders.add(executor.submit(() -> {
+                    start.await();
+                    return HealthResponder.getOrStart(0, channel);
+                }));
+            }
+            start.countDown();
+            final HealthResponder first = responders.get(0).get(1, TimeUnit.MINUTES);
+            for (Future<HealthResponder> r : responders) {
+                assertSame(first, r.get(1, TimeUnit.MINUTES));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static int get(int port, String path) throws IOException {
+        final HttpURLConnection c = (HttpURLConnection) new URL("http://127.0.0.1:" + port + path).openConnection();
+        try {
+            final int status = c.getResponseCode();
+            try (InputStream in = status == 200 ? c.getInputStream() : c.getErrorStream();
+                 Scanner body = new Scanner(in, StandardCharsets.US_ASCII.name())) {
+                assertTrue(body.useDelimiter("\\A").next().startsWith("{\"channel\":"));
+            }
+            return status;
+        } finally {
+            c.disconnect();
+        }
+    }
+
+    private static void assertStopped(int port) throws Exception {
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (true) {
+            try {
+                get(port, "/");
+            } catch (ConnectException e) {
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) fail("responder still listening on " + port);
+            Thread.sleep(100);
+        }
+    }
+}
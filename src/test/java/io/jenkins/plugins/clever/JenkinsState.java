@@ -0,0 +1,62 @@
+package io.jenkins.plugins.clever;
+
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run a {@link JenkinsRule} for the whole benchmark trial, so benchmarks can rely on a live Jenkins instance.
+ */
+@State(Scope.Benchmark)
+public class JenkinsState {
+
+    final JenkinsRule j = new JenkinsRule();
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch stop = new CountDownLatch(1);
+
+    private Thread thread;
+
+    private volatile Throwable failure;
+
+    @Setup(Level.Trial)
+    public void startJenkins() throws Throwable {
+        j.timeout = 0;
+        final Statement statement = j.apply(new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                started.countDown();
+                stop.await();
+            }
+        }, Description.createTestDescription(getClass(), "benchmark"));
+
+        thread = new Thread(() -> {
+            try {
+                statement.evaluate();
+            } catch (Throwable t) {
+                failure = t;
+                started.countDown();
+            }
+        }, "Jenkins for benchmark");
+        thread.start();
+        if (!started.await(5, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Jenkins failed to start");
+        }
+        if (failure != null) throw failure;
+    }
+
+    @TearDown(Level.Trial)
+    public void stopJenkins() throws InterruptedException {
+        stop.countDown();
+        thread.join();
+    }
+}
@@ -0,0 +1,40 @@
+package io.jenkins.plugins.clever;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogBufferTest {
+
+    @Test
+    public void dropsOldestLinesOnceFull() {
+        final LogBuffer buffer = new LogBuffer(10);
+        buffer.append("aaaa");
+        buffer.append("bbbb");
+        assertEquals(0, buffer.getDropped());
+        buffer.append("cccc");
+        assertEquals(Arrays.asList("bbbb", "cccc"), buffer.getLines());
+        assertEquals(1, buffer.getDropped());
+    }
+
+    @Test
+    public void truncatesLongLines() {
+        final LogBuffer buffer = new LogBuffer(10000);
+        buffer.append(String.join("", Collections.nCopies(2000, "x")));
+        final String line = buffer.getLines().get(0);
+        assertEquals(1025, line.length());
+        assertTrue(line.endsWith("…"));
+    }
+
+    @Test
+    public void lineLargerThanCapacityIsDropped() {
+        final LogBuffer buffer = new LogBuffer(3);
+        buffer.append("abcd");
+        assertTrue(buffer.getLines().isEmpty());
+        assertEquals(1, buffer.getDropped());
+    }
+}
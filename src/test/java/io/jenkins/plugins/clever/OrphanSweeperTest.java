@@ -0,0 +1,94 @@
+package io.jenkins.plugins.clever;
+
+import hudson.ExtensionList;
+import hudson.model.TaskListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OrphanSweeperTest {
+
+    private static final long GRACE_PERIOD = 500;
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private CleverApiSimulator simulator;
+
+    private CleverCloud cloud;
+
+    private OrphanSweeper sweeper;
+
+    private long gracePeriod;
+
+    @Before
+    public void setUp() throws IOException {
+        gracePeriod = OrphanSweeper.gracePeriod;
+        OrphanSweeper.gracePeriod = GRACE_PERIOD;
+        simulator = new CleverApiSimulator().start();
+        cloud = simulator.createCloud("sweeper");
+        sweeper = ExtensionList.lookup(OrphanSweeper.class).get(OrphanSweeper.class);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        OrphanSweeper.gracePeriod = gracePeriod;
+        simulator.close();
+    }
+
+    @Test
+    public void deletesOldOrphans() throws Exception {
+        final String orphan = simulator.createApplication(cloud.getApplicationTag(), old());
+        sweeper.sweep(cloud, TaskListener.NULL);
+        assertFalse(simulator.hasApplication(orphan));
+    }
+
+    @Test
+    public void keepsApplicationsBeingProvisioned() throws Exception {
+        final String young = simulator.createApplication(cloud.getApplicationTag(), System.currentTimeMillis());
+        sweeper.sweep(cloud, TaskListener.NULL);
+        assertTrue(simulator.hasApplication(young));
+    }
+
+    @Test
+    public void keepsOtherApplications() throws Exception {
+        final String foreign = simulator.createApplication("jenkins:some-other-controller:sweeper", old());
+        final String user = simulator.createApplication(null, old());
+        sweeper.sweep(cloud, TaskListener.NULL);
+        assertTrue(simulator.hasApplication(foreign));
+        assertTrue(simulator.hasApplication(user));
+    }
+
+    @Test
+    public void keepsLiveAgents() throws Exception {
+        final String live = simulator.createApplication(cloud.getApplicationTag(), old());
+        AgentRegistry.get().register(live, "sweeper-live", cloud.name, "template", CleverApiSimulator.ORGANISATION, "par");
+        j.jenkins.addNode(new CleverAgent(cloud.name, "template", "sweeper-live", CleverApiSimulator.ORGANISATION,
+                live, "/home/jenkins", "sweeper", CleverAgent.ONE_SHOT));
+        sweeper.sweep(cloud, TaskListener.NULL);
+        assertTrue(simulator.hasApplication(live));
+    }
+
+    @Test
+    public void unknownCreationDateGetsGracePeriodFromFirstSeen() throws Exception {
+        final String undated = simulator.createApplication(cloud.getApplicationTag(), null);
+        sweeper.sweep(cloud, TaskListener.NULL);
+        assertTrue("first seen just now", simulator.hasApplication(undated));
+
+        Thread.sleep(2 * GRACE_PERIOD);
+        sweeper.sweep(cloud, TaskListener.NULL);
+        assertFalse(simulator.hasApplication(undated));
+    }
+
+    private static long old() {
+        return System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+    }
+}
@@ -0,0 +1,108 @@
+package io.jenkins.plugins.clever;
+
+import hudson.model.Label;
+import hudson.model.Node;
+import jenkins.model.Jenkins;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths run by {@link CleverNodeProvisionerStrategy} on every <code>NodeProvisioner</code> tick, against a cloud
+ * with many templates and a large fleet of agents.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProvisioningBenchmark {
+
+    @Param({"10", "200"})
+    public int templates;
+
+    @Param({"100", "2000"})
+    public int agents;
+
+    private CleverCloud cloud;
+
+    private Label last;
+
+    private Label unknown;
+
+    private AgentTemplate template;
+
+    @Setup(Level.Trial)
+    public void setup(JenkinsState state) throws Exception {
+        final Jenkins jenkins = state.j.jenkins;
+        final List<AgentTemplate> t = new ArrayList<>();
+        for (int i = 0; i < templates; i++) {
+            t.add(new AgentTemplate("template-" + i, "clever linux-" + i));
+        }
+        cloud = new CleverCloud("benchmark", null, "orga_benchmark", t);
+        jenkins.clouds.clear();
+        jenkins.clouds.add(cloud);
+
+        final List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < agents; i++) {
+            final AgentTemplate template = t.get(i % templates);
+            nodes.add(new CleverAgent(cloud.name, template.getDisplayName(), "agent-" + i, "orga_benchmark",
+                    "app_" + i, "/home/jenkins", template.getLabel(), template.createRetentionStrategy()));
+        }
+        jenkins.setNodes(nodes);
+
+        last = Label.parseExpression("clever&&linux-" + (templates - 1));
+        unknown = Label.get("windows");
+        template = cloud.getTemplate(last);
+
+        for (int i = 0; i < 100; i++) {
+            DemandForecast.get().completed(last, 60_000);
+        }
+    }
+
+    /**
+     * <code>NodeProvisioner.StrategyState</code> can't be created outside of core, so we measure the check the
+     * strategy runs for each cloud.
+     */
+    @Benchmark
+    public boolean canProvision() {
+        return cloud.canProvision(last);
+    }
+
+    @Benchmark
+    public boolean canProvisionUnknownLabel() {
+        return cloud.canProvision(unknown);
+    }
+
+    @Benchmark
+    public AgentTemplate getTemplate() {
+        return cloud.getTemplate(last);
+    }
+
+    @Benchmark
+    public boolean reserve() {
+        final CapacityTracker capacity = CapacityTracker.of(cloud);
+        final CapacityTracker.Reservation reservation = capacity.reserve(cloud, template);
+        if (reservation != null) reservation.cancel();
+        return reservation != null;
+    }
+
+    @Benchmark
+    public DemandForecast.Forecast forecast() {
+        return DemandForecast.get().forecast(last, cloud.name, template.getDisplayName(), agents / templates, false);
+    }
+}
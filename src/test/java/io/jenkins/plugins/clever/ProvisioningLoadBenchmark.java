@@ -0,0 +1,124 @@
+package io.jenkins.plugins.clever;
+
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.slaves.NodeProvisioner;
+import jenkins.model.Jenkins;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provision a thousand agents at once against {@link CleverApiSimulator}, with realistic latencies and optional
+ * fault injection, and check all applications get deleted once agents are removed.
+ * <p>
+ * Score is the time to get all agents deployed. Agents never connect back, as there's no real container running.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {
+        "-Dio.jenkins.plugins.clever.ApiClients.maxRequests=256",
+        "-Dio.jenkins.plugins.clever.ApiClients.requestsPerSecond=5000",
+        "-Dio.jenkins.plugins.clever.ApiClients.burst=5000"
+})
+@State(Scope.Benchmark)
+public class ProvisioningLoadBenchmark {
+
+    private static final long DRAIN_TIMEOUT = TimeUnit.MINUTES.toMillis(2);
+
+    @Param("1000")
+    public int agents;
+
+    @Param({"16", "128"})
+    public int concurrency;
+
+    @Param({"0", "0.02"})
+    public double errorRate;
+
+    private CleverApiSimulator simulator;
+
+    private CleverCloud cloud;
+
+    private Label label;
+
+    @Setup(Level.Trial)
+    public void setup(JenkinsState state) throws Exception {
+        simulator = new CleverApiSimulator()
+                .latency(50, 0.5)
+                .latency(CleverApiSimulator.Operation.CREATE_APPLICATION, 400, 0.5)
+                .latency(CleverApiSimulator.Operation.SET_ENV, 150, 0.5)
+                .latency(CleverApiSimulator.Operation.GIT, 200, 0.5)
+                .latency(CleverApiSimulator.Operation.DELETE_APPLICATION, 300, 0.5)
+                .errorRate(errorRate)
+                .quota(agents)
+                .deployment(3000, 0.5, errorRate)
+                .start();
+
+        final CleverAPICredentials credentials = new CleverAPICredentials("simulator", null, "token", "secret", "consumerKey", "consumerSecret");
+        SystemCredentialsProvider.getInstance().getCredentials().add(credentials);
+        SystemCredentialsProvider.getInstance().save();
+
+        final AgentTemplate template = new AgentTemplate("load", "clever-load");
+        cloud = new CleverCloud("simulator", credentials.getId(), CleverApiSimulator.ORGANISATION, Collections.singletonList(template));
+        cloud.setMaxConcurrentProvisioning(concurrency);
+        final Jenkins jenkins = state.j.jenkins;
+        jenkins.clouds.clear();
+        jenkins.clouds.add(cloud);
+        label = Label.get("clever-load");
+    }
+
+    @Benchmark
+    public int provision() throws InterruptedException {
+        final Collection<NodeProvisioner.PlannedNode> planned = cloud.provision(label, agents);
+        int deployed = 0;
+        for (NodeProvisioner.PlannedNode p : planned) {
+            try {
+                p.future.get();
+                deployed++;
+            } catch (ExecutionException e) {
+                // counted as failed provisioning
+            }
+        }
+        return deployed;
+    }
+
+    @TearDown(Level.Invocation)
+    public void removeAgents() throws IOException, InterruptedException {
+        final Jenkins jenkins = Jenkins.getInstance();
+        for (Node node : jenkins.getNodes()) {
+            if (node instanceof CleverAgent) jenkins.removeNode(node);
+        }
+
+        final long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT;
+        while (simulator.getApplications() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        if (simulator.getApplications() > 0) {
+            throw new IllegalStateException(simulator.getApplications() + " applications leaked, " + simulator);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        simulator.close();
+    }
+}
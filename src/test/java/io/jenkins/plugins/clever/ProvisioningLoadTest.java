@@ -0,0 +1,136 @@
+package io.jenkins.plugins.clever;
+
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.slaves.NodeProvisioner;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Provision a thousand agents at once against {@link CleverApiSimulator} with faults injected, and check every planned
+ * agent completes, successfully or not, in reasonable time and without leaking capacity slots nor applications.
+ * <p>
+ * Number of agents can be set with <code>-Dio.jenkins.plugins.clever.ProvisioningLoadTest.agents=...</code>. API
+ * client limits are raised for tests in <code>pom.xml</code>, see {@link ProvisioningLoadBenchmark} for the same
+ * scenario with production limits.
+ */
+public class ProvisioningLoadTest {
+
+    private static final int AGENTS = Integer.getInteger(ProvisioningLoadTest.class.getName() + ".agents", 1000);
+
+    private static final int CONCURRENCY = 128;
+
+    private static final long TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Agents completed per second we expect at least, far below what the simulator allows with its 10ms median
+     * latency, so we only catch provisioning being serialized or stalled by retries.
+     */
+    private static final double MIN_THROUGHPUT = 5;
+
+    /**
+     * Max time for 95% of agents to complete, from the time they were planned, queue wait included.
+     */
+    private static final long MAX_P95_LATENCY = TimeUnit.MINUTES.toMillis(2);
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private CleverApiSimulator simulator;
+
+    public ProvisioningLoadTest() {
+        j.timeout = (int) TimeUnit.MILLISECONDS.toSeconds(3 * TIMEOUT);
+    }
+
+    @After
+    public void stopSimulator() throws IOException {
+        if (simulator != null) simulator.close();
+    }
+
+    @Test
+    public void provisionThousandAgents() throws Exception {
+        simulator = new CleverApiSimulator()
+                .latency(10, 0.5)
+                .errorRate(0.02)
+                // not enough room for all agents, so some application creations are refused
+                .quota(AGENTS - AGENTS / 20)
+                .deployment(200, 0.5, 0.1)
+                .start();
+
+        final AgentTemplate template = new AgentTemplate("load", "clever-load");
+        final CleverCloud cloud = simulator.createCloud("load-test", template);
+        cloud.setMaxConcurrentProvisioning(CONCURRENCY);
+
+        final long start = System.currentTimeMillis();
+        final Collection<NodeProvisioner.PlannedNode> planned = cloud.provision(Label.get("clever-load"), AGENTS);
+        assertEquals(AGENTS, planned.size());
+
+        final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger deployed = new AtomicInteger();
+        final List<CompletableFuture<Node>> futures = new ArrayList<>();
+        for (NodeProvisioner.PlannedNode p : planned) {
+            futures.add(((PlannedNode) p).promise().whenComplete((n, t) -> {
+                latencies.add(System.currentTimeMillis() - start);
+                if (t == null) deployed.incrementAndGet();
+            }));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // failed provisioning is fine, as long as it gets reported
+        } catch (TimeoutException e) {
+            fail(AGENTS - latencies.size() + " provisionings never completed, " + simulator);
+        }
+        await("all planned agents reported", () -> latencies.size() == AGENTS);
+
+        final long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        final double throughput = AGENTS * 1000d / elapsed;
+        final List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        final long p95 = sorted.get((int) Math.ceil(0.95 * AGENTS) - 1);
+        final String summary = String.format("%d/%d deployed in %dms (%.1f/s), p95=%dms, %s",
+                deployed.get(), AGENTS, elapsed, throughput, p95, simulator);
+
+        assertTrue("throughput too low: " + summary, throughput >= MIN_THROUGHPUT);
+        assertTrue("latency too high: " + summary, p95 <= MAX_P95_LATENCY);
+        // quota, injected faults and failed deployments account for roughly 15% of agents
+        assertTrue("too many failures: " + summary, deployed.get() >= AGENTS / 2);
+        assertTrue("API client concurrency isn't bounded: " + summary, simulator.getPeakConcurrency() <= 256);
+
+        final CapacityTracker capacity = CapacityTracker.of(cloud);
+        await("provisioning slots released", () -> capacity.getProvisioning("load") == 0);
+
+        for (Node node : j.jenkins.getNodes()) {
+            if (node instanceof CleverAgent) j.jenkins.removeNode(node);
+        }
+        await("all applications deleted", () -> simulator.getApplications() == 0);
+        await("all capacity slots released", () -> capacity.getTotal() == 0);
+        assertEquals(0, capacity.getInstances("load"));
+    }
+
+    private static void await(String what, BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) fail("Timed out waiting for " + what);
+            Thread.sleep(100);
+        }
+    }
+}
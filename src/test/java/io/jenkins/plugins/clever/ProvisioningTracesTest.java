@@ -0,0 +1,66 @@
+package io.jenkins.plugins.clever;
+
+import com.gargoylesoftware.htmlunit.FailingHttpStatusCodeException;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import jenkins.model.Jenkins;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ProvisioningTracesTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Before
+    public void secure() {
+        j.jenkins.setSecurityRealm(j.createDummySecurityRealm());
+        j.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy()
+                .grant(Jenkins.ADMINISTER).everywhere().to("admin")
+                .grant(Jenkins.READ).everywhere().to("user"));
+    }
+
+    @Test
+    public void tracesAreMovedToHistoryOnTermination() {
+        final ProvisioningTraces traces = ProvisioningTraces.get();
+        traces.start("traced-agent", "template", System.currentTimeMillis());
+        traces.record("traced-agent", ProvisioningTraces.Phase.CONNECTED);
+        traces.firstBuild("traced-agent");
+        traces.firstBuild("traced-agent");
+        assertEquals(1, traces.getActive().size());
+        assertEquals("planned, connected and first build only once", 3, traces.get("traced-agent").getSteps().size());
+
+        traces.terminated("traced-agent");
+        assertTrue(traces.getActive().isEmpty());
+        assertEquals(1, traces.getHistory().size());
+        assertNotNull(traces.get("traced-agent"));
+    }
+
+    @Test
+    public void administratorsCanSeeTraces() throws Exception {
+        ProvisioningTraces.get().start("visible-agent", "template", System.currentTimeMillis());
+        final HtmlPage page = j.createWebClient().login("admin").goTo("clever-cloud-traces/");
+        assertTrue(page.asText().contains("visible-agent"));
+    }
+
+    @Test
+    public void othersCannotSeeTraces() throws Exception {
+        ProvisioningTraces.get().start("hidden-agent", "template", System.currentTimeMillis());
+        final JenkinsRule.WebClient wc = j.createWebClient().login("user");
+        try {
+            wc.goTo("clever-cloud-traces/");
+            fail("traces should only be visible to administrators");
+        } catch (FailingHttpStatusCodeException e) {
+            assertEquals(403, e.getStatusCode());
+            assertFalse(e.getResponse().getContentAsString().contains("hidden-agent"));
+        }
+    }
+}
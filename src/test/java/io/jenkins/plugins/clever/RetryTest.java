@@ -0,0 +1,161 @@
+package io.jenkins.plugins.clever;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RetryTest {
+
+    @Test
+    public void retriesTransientFailures() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final String result = Retry.call(null, true, () -> {
+            if (calls.incrementAndGet() < 3) throw new IOException("Connection reset");
+            return "ok";
+        });
+        assertEquals("ok", result);
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void doesNotRetryClientErrors() {
+        final AtomicInteger calls = new AtomicInteger();
+        try {
+            Retry.call(null, true, () -> {
+                calls.incrementAndGet();
+                throw new ApiException(404, "Not Found");
+            });
+            fail("404 should not be retried");
+        } catch (Exception e) {
+            assertEquals(404, ((ApiException) e).getCode());
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void onlyRetriesNonIdempotentCallsWhenNotProcessed() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        try {
+            Retry.call(null, false, () -> {
+                calls.incrementAndGet();
+                throw new ApiException(500, "Internal server error");
+            });
+            fail("500 may have been processed, so should not be retried");
+        } catch (ApiException e) {
+            assertEquals(500, e.getCode());
+        }
+        assertEquals(1, calls.get());
+
+        calls.set(0);
+        final String result = Retry.call(null, false, () -> {
+            if (calls.incrementAndGet() < 2) throw new ApiException(503, "Service unavailable");
+            return "created";
+        });
+        assertEquals("created", result);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void doesNotRetryRejectedPush() {
+        final AtomicInteger calls = new AtomicInteger();
+        try {
+            Retry.call(null, true, () -> {
+                calls.incrementAndGet();
+                throw new DeployPack.PushRejectedException("Failed to push to remote: REJECTED_OTHER_REASON");
+            });
+            fail("rejected push should not be retried");
+        } catch (Exception e) {
+            assertTrue(e instanceof DeployPack.PushRejectedException);
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void doesNotRetryInterruptedCalls() {
+        final AtomicInteger calls = new AtomicInteger();
+        try {
+            Retry.call(null, true, () -> {
+                calls.incrementAndGet();
+                // as wrapped by generated ApiClient
+                throw new ApiException(new InterruptedIOException("interrupted"));
+            });
+            fail("interrupted call should not be retried");
+        } catch (Exception e) {
+            assertTrue(e.getCause() instanceof InterruptedIOException);
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void retriesSocketTimeouts() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final String result = Retry.call(null, true, () -> {
+            if (calls.incrementAndGet() < 2) throw new SocketTimeoutException("Read timed out");
+            return "ok";
+        });
+        assertEquals("ok", result);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void stopsRetryingOnceInterrupted() {
+        final AtomicInteger calls = new AtomicInteger();
+        try {
+            Retry.call(null, true, () -> {
+                calls.incrementAndGet();
+                Thread.currentThread().interrupt();
+                throw new IOException("Connection reset");
+            });
+            fail("interrupted thread should not retry");
+        } catch (Exception e) {
+            assertEquals("Connection reset", e.getMessage());
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void failsFastWhenCircuitIsOpen() {
+        final CircuitBreaker breaker = new CircuitBreaker("retry-open", 1, TimeUnit.MINUTES.toMillis(1));
+        breaker.failure();
+        final AtomicInteger calls = new AtomicInteger();
+        try {
+            Retry.call(breaker, true, calls::incrementAndGet);
+            fail("circuit breaker is open");
+        } catch (Exception e) {
+            assertTrue(e instanceof IOException);
+        }
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    public void reportsOutcomeToCircuitBreaker() throws Exception {
+        final CircuitBreaker breaker = new CircuitBreaker("retry-outcome", 1, 50);
+        breaker.failure();
+        Thread.sleep(100);
+
+        // trial request failed for a reason which doesn't tell anything about API health
+        try {
+            Retry.call(breaker, true, () -> {
+                throw new ApiException(404, "Not Found");
+            });
+            fail();
+        } catch (ApiException e) {
+            assertEquals(404, e.getCode());
+        }
+        assertTrue("trial slot has been released", breaker.allowsRequests());
+
+        assertEquals("ok", Retry.call(breaker, true, () -> "ok"));
+        assertTrue(breaker.acquire());
+        assertTrue("circuit is closed, so concurrent requests are allowed", breaker.acquire());
+    }
+}
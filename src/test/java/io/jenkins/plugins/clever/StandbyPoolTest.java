@@ -0,0 +1,177 @@
+package io.jenkins.plugins.clever;
+
+import hudson.model.Node;
+import hudson.slaves.RetentionStrategy;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StandbyPoolTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private CleverApiSimulator simulator;
+
+    @After
+    public void stopSimulator() throws IOException {
+        if (simulator != null) simulator.close();
+    }
+
+    @Test
+    public void concurrentRefillsDontOverProvision() throws Exception {
+        simulator = new CleverApiSimulator()
+                .latency(20, 0.5)
+                .deployment(100, 0.2, 0)
+                .start();
+        final AgentTemplate template = new AgentTemplate("standby", "standby");
+        template.setMinIdle(3);
+        final CleverCloud cloud = simulator.createCloud("standby-race", template);
+
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> refills = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                refills.add(executor.submit(() -> {
+                    start.await();
+                    StandbyPool.get().refill(cloud, template);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : refills) f.get(1, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final CapacityTracker capacity = CapacityTracker.of(cloud);
+        awaitProvisioned(capacity, "standby");
+        assertEquals(3, standby(cloud).size());
+        assertEquals(3, simulator.getApplications());
+
+        // pool is full, a new refill is a no-op
+        StandbyPool.get().refill(cloud, template);
+        awaitProvisioned(capacity, "standby");
+        assertEquals(3, simulator.getApplications());
+    }
+
+    @Test
+    public void shrinkingPoolReleasesSurplus() throws Exception {
+        simulator = new CleverApiSimulator().start();
+        final AgentTemplate template = new AgentTemplate("shrink", "shrink");
+        final CleverCloud cloud = simulator.createCloud("standby-shrink", template);
+        for (int i = 0; i < 2; i++) {
+            final CleverAgent agent = agent(cloud, "shrink-" + i);
+            agent.setStandby(true);
+            j.jenkins.addNode(agent);
+        }
+
+        template.setMinIdle(1);
+        StandbyPool.get().refill(cloud, template);
+        assertEquals(1, standby(cloud).size());
+    }
+
+    @Test
+    public void countsHitsAndMissesOncePerAgent() throws Exception {
+        simulator = new CleverApiSimulator().start();
+        final AgentTemplate template = new AgentTemplate("stats", "stats");
+        template.setMinIdle(1);
+        template.setMaxInstances(1);
+        final CleverCloud cloud = simulator.createCloud("standby-stats", template);
+        // hold the only slot, so refill triggered by a hit can't provision a replacement
+        assertNotNull(CapacityTracker.of(cloud).reserve(cloud, template));
+
+        final CleverAgent standby = agent(cloud, "stats-standby");
+        standby.setStandby(true);
+        j.jenkins.addNode(standby);
+        final CleverAgent onDemand = agent(cloud, "stats-on-demand");
+        final CleverAgent late = agent(cloud, "stats-late");
+        j.jenkins.addNode(onDemand);
+        j.jenkins.addNode(late);
+
+        final StandbyPool pool = StandbyPool.get();
+        pool.take(onDemand);
+        assertNull("pool wasn't empty, build just went to another agent", pool.getStatistics().get("standby-stats/stats"));
+
+        pool.take(standby);
+        pool.take(standby);
+        assertFalse(standby.isStandby());
+        assertEquals(1, statistics(pool).getHits());
+
+        pool.take(late);
+        pool.take(late);
+        assertEquals(1, statistics(pool).getMisses());
+        assertEquals(1, statistics(pool).getHits());
+
+        assertEquals(Long.valueOf(1), ProvisioningMetrics.get().getStandbyHits().get("standby-stats/stats"));
+        assertEquals(Long.valueOf(1), ProvisioningMetrics.get().getStandbyMisses().get("standby-stats/stats"));
+        final StringWriter prometheus = new StringWriter();
+        ProvisioningMetrics.get().writePrometheus(new PrintWriter(prometheus));
+        assertTrue(prometheus.toString(), prometheus.toString()
+                .contains("clever_cloud_standby_misses_total{cloud=\"standby-stats\",template=\"stats\"} 1"));
+    }
+
+    @Test
+    public void noMissWithoutPool() throws Exception {
+        simulator = new CleverApiSimulator().start();
+        final AgentTemplate template = new AgentTemplate("nopool", "nopool");
+        final CleverCloud cloud = simulator.createCloud("standby-none", template);
+        final CleverAgent agent = agent(cloud, "nopool-0");
+        j.jenkins.addNode(agent);
+
+        StandbyPool.get().take(agent);
+        assertNull(StandbyPool.get().getStatistics().get("standby-none/nopool"));
+    }
+
+    private static StandbyPool.Statistics statistics(StandbyPool pool) {
+        final StandbyPool.Statistics statistics = pool.getStatistics().get("standby-stats/stats");
+        assertNotNull(statistics);
+        return statistics;
+    }
+
+    private static CleverAgent agent(CleverCloud cloud, String name) throws Exception {
+        final AgentTemplate template = cloud.getTemplates().get(0);
+        return new CleverAgent(cloud.name, template.getDisplayName(), name, CleverApiSimulator.ORGANISATION,
+                "app_" + name, "/home/jenkins", template.getLabel(), RetentionStrategy.NOOP);
+    }
+
+    private List<CleverAgent> standby(CleverCloud cloud) {
+        final List<CleverAgent> standby = new ArrayList<>();
+        for (Node node : j.jenkins.getNodes()) {
+            if (node instanceof CleverAgent && ((CleverAgent) node).isStandby()
+                    && cloud.name.equals(((CleverAgent) node).getCloudName())) {
+                standby.add((CleverAgent) node);
+            }
+        }
+        return Collections.unmodifiableList(standby);
+    }
+
+    private static void awaitProvisioned(CapacityTracker capacity, String template) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+        while (capacity.getProvisioning(template) > 0) {
+            if (System.currentTimeMillis() > deadline) throw new AssertionError("standby agents never got provisioned");
+            Thread.sleep(100);
+        }
+    }
+}
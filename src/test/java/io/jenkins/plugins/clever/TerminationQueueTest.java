@@ -0,0 +1,122 @@
+package io.jenkins.plugins.clever;
+
+import hudson.slaves.RetentionStrategy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TerminationQueueTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private CleverApiSimulator simulator;
+
+    private long initialDelay;
+
+    @Before
+    public void setUp() throws IOException {
+        initialDelay = TerminationQueue.initialDelay;
+        TerminationQueue.initialDelay = 100;
+        simulator = new CleverApiSimulator().start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TerminationQueue.initialDelay = initialDelay;
+        simulator.close();
+    }
+
+    @Test
+    public void deletesApplicationOnce() throws Exception {
+        simulator.latency(CleverApiSimulator.Operation.DELETE_APPLICATION, 200, 0);
+        final CleverCloud cloud = simulator.createCloud("termination-once");
+        final String app = register(cloud, "once");
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[5];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    TerminationQueue.get().enqueue(app);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread t : threads) t.join();
+
+        await(() -> AgentRegistry.get().get(app) == null);
+        assertFalse(simulator.hasApplication(app));
+        assertEquals(1, simulator.getCalls(CleverApiSimulator.Operation.DELETE_APPLICATION));
+        await(() -> TerminationQueue.get().size() == 0);
+    }
+
+    @Test
+    public void ignoresUnknownApplications() {
+        TerminationQueue.get().enqueue("app_unknown");
+        assertEquals(0, TerminationQueue.get().size());
+    }
+
+    @Test
+    public void retriesFailedDeletion() throws Exception {
+        final CleverCloud cloud = simulator.createCloud("termination-retry");
+        final String app = register(cloud, "retry");
+        // cloud has been removed, for example while reconfiguring Jenkins
+        j.jenkins.clouds.remove(cloud);
+
+        TerminationQueue.get().enqueue(app);
+        Thread.sleep(500);
+        assertTrue(simulator.hasApplication(app));
+        assertEquals(AgentRegistry.State.TERMINATING, AgentRegistry.get().get(app).getState());
+        assertEquals(1, TerminationQueue.get().size());
+
+        j.jenkins.clouds.add(cloud);
+        await(() -> !simulator.hasApplication(app));
+        await(() -> AgentRegistry.get().get(app) == null);
+    }
+
+    @Test
+    public void resumesInterruptedDeletions() throws Exception {
+        final CleverCloud cloud = simulator.createCloud("termination-resume");
+        final String terminating = register(cloud, "terminating");
+        AgentRegistry.get().setState(terminating, AgentRegistry.State.TERMINATING);
+        final String lost = register(cloud, "lost");
+        final String live = register(cloud, "live");
+        j.jenkins.addNode(new CleverAgent(cloud.name, "template", "termination-live", CleverApiSimulator.ORGANISATION,
+                live, "/home/jenkins", "clever", RetentionStrategy.NOOP));
+
+        TerminationQueue.resume();
+        await(() -> !simulator.hasApplication(terminating) && !simulator.hasApplication(lost));
+        assertTrue(simulator.hasApplication(live));
+    }
+
+    private String register(CleverCloud cloud, String name) {
+        final String app = simulator.createApplication(cloud.getApplicationTag(), System.currentTimeMillis());
+        AgentRegistry.get().register(app, "termination-" + name, cloud.name, "template", CleverApiSimulator.ORGANISATION, "par");
+        return app;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) fail("Timed out");
+            Thread.sleep(50);
+        }
+    }
+}
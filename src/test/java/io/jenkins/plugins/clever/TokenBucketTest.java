@@ -0,0 +1,25 @@
+package io.jenkins.plugins.clever;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketTest {
+
+    @Test
+    public void allowsBurstThenLimitsRate() throws InterruptedException {
+        final TokenBucket bucket = new TokenBucket(2, 5);
+        final long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) bucket.acquire();
+        final long burst = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("burst took " + burst + "ms", burst < 400);
+
+        // two more tokens have to be refilled at 2 per second
+        bucket.acquire();
+        bucket.acquire();
+        final long total = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("got 7 tokens in " + total + "ms", total >= 900);
+    }
+}
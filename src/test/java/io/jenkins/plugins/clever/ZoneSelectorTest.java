@@ -0,0 +1,44 @@
+package io.jenkins.plugins.clever;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class ZoneSelectorTest {
+
+    @Test
+    public void exploresUnknownZonesFirst() {
+        final ZoneSelector selector = new ZoneSelector();
+        selector.succeeded("par", 1000);
+        assertEquals(Arrays.asList("mtl", "rbx", "par"), selector.rank(Arrays.asList("par", "mtl", "rbx")));
+        assertEquals(0, selector.best(Arrays.asList("mtl", "rbx")), 0);
+    }
+
+    @Test
+    public void prefersFastestZone() {
+        final ZoneSelector selector = new ZoneSelector();
+        selector.succeeded("par", 5000);
+        selector.succeeded("mtl", 1000);
+        assertEquals(Arrays.asList("mtl", "par"), selector.rank(Arrays.asList("par", "mtl")));
+        assertEquals(1000, selector.best(Arrays.asList("par", "mtl")), 1);
+    }
+
+    @Test
+    public void failuresDemoteZone() {
+        final ZoneSelector selector = new ZoneSelector();
+        selector.succeeded("par", 1000);
+        selector.succeeded("mtl", 2000);
+        for (int i = 0; i < 5; i++) selector.failed("par");
+        assertEquals(Arrays.asList("mtl", "par"), selector.rank(Arrays.asList("par", "mtl")));
+    }
+
+    @Test
+    public void failingZoneRanksBehindHealthyOne() {
+        final ZoneSelector selector = new ZoneSelector();
+        selector.failed("par");
+        selector.succeeded("mtl", 60000);
+        assertEquals(Arrays.asList("mtl", "par"), selector.rank(Arrays.asList("par", "mtl")));
+    }
+}